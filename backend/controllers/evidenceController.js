@@ -0,0 +1,26 @@
+const evidenceStore = require('../services/evidenceStore');
+
+// HEAD /api/evidence/:sha256 — 200 if this user already uploaded these bytes, 404 if they need uploading
+const checkEvidence = async (req, res) => {
+  try {
+    const { sha256 } = req.params;
+    if (!evidenceStore.isValidHash(sha256)) {
+      return res.status(400).end();
+    }
+
+    const record = await evidenceStore.findByHash(sha256, { uploadedBy: req.user.id });
+    if (!record) {
+      return res.status(404).end();
+    }
+
+    res.set('X-Evidence-Size', String(record.size));
+    res.status(200).end();
+  } catch (error) {
+    console.error('[EvidenceController][checkEvidence] Error:', error.message, error.stack);
+    res.status(500).end();
+  }
+};
+
+module.exports = {
+  checkEvidence,
+};
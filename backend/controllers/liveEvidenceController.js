@@ -0,0 +1,210 @@
+const path = require('path');
+const { Match, TournamentParticipant } = require('../models');
+const { LiveSegmentStore } = require('../services/liveSegmentStore');
+const { mapControllerError } = require('../utils/mapControllerError');
+
+// Kept outside the statically served uploads directory: live footage is admin-only
+const LIVE_EVIDENCE_DIR = path.resolve(process.env.LIVE_EVIDENCE_DIR || path.join(process.cwd(), 'live-evidence'));
+const store = new LiveSegmentStore(LIVE_EVIDENCE_DIR);
+
+// A device sends a segment every couple of seconds; don't hit the database for each one.
+// Short enough that a match closing is noticed within a minute.
+const PARTICIPANT_CACHE_MS = 60 * 1000;
+const participantCache = new Map(); // `${matchId}:${userId}` -> expiresAt
+let lastCacheSweep = Date.now();
+
+// Streams that stop sending without completing (app killed, device offline)
+const STREAM_IDLE_MS = 30 * 60 * 1000;
+const RETENTION_DAYS = Number(process.env.LIVE_EVIDENCE_RETENTION_DAYS) || 30;
+
+// Segments are only taken while the match can still be played
+const STREAMABLE_STATUSES = ['scheduled', 'live', 'awaiting_confirmation'];
+
+const MAX_SEQUENCE = 1_000_000;
+const RETRY_AFTER_SECONDS = 1;
+
+const parseSequence = (value) => {
+  const sequence = Number(value);
+  return Number.isInteger(sequence) && sequence >= 0 && sequence <= MAX_SEQUENCE ? sequence : null;
+};
+
+// Ids end up in file paths, so only plain positive integers are accepted
+const parseId = (value) => {
+  const id = Number(value);
+  return Number.isInteger(id) && id > 0 ? id : null;
+};
+
+// Drops expired cache entries and forgets idle streams, at most once per cache period
+const sweepCaches = (now) => {
+  if (now - lastCacheSweep < PARTICIPANT_CACHE_MS) return;
+  lastCacheSweep = now;
+  for (const [key, expiresAt] of participantCache) {
+    if (expiresAt <= now) participantCache.delete(key);
+  }
+  store.evictIdle(STREAM_IDLE_MS, now);
+};
+
+/**
+ * Resolves to 'streamable', 'closed' (participant, but the match is over),
+ * 'forbidden' (not a participant) or null (no such match).
+ */
+const getStreamAccess = async (matchId, userId) => {
+  const now = Date.now();
+  sweepCaches(now);
+
+  const key = `${matchId}:${userId}`;
+  const expiresAt = participantCache.get(key);
+  if (expiresAt && expiresAt > now) return 'streamable';
+
+  const match = await Match.findByPk(matchId, {
+    attributes: ['id', 'tournament_id', 'participant1_id', 'participant2_id', 'status'],
+  });
+  if (!match) return null;
+
+  const participant = await TournamentParticipant.findOne({
+    where: { tournament_id: match.tournament_id, user_id: userId },
+  });
+  const isParticipant =
+    !!participant && (participant.id === match.participant1_id || participant.id === match.participant2_id);
+  if (!isParticipant) return 'forbidden';
+  if (!STREAMABLE_STATUSES.includes(match.status)) return 'closed';
+
+  participantCache.set(key, now + PARTICIPANT_CACHE_MS);
+  return 'streamable';
+};
+
+// PUT /api/matches/:id/live/segments/:seq — body is a raw MPEG-TS segment
+const ingestLiveSegment = async (req, res) => {
+  try {
+    const id = parseId(req.params.id);
+    const sequence = parseSequence(req.params.seq);
+    if (id === null || sequence === null) {
+      return res.status(400).json({ message: 'Invalid segment reference.' });
+    }
+    if (!Buffer.isBuffer(req.body) || req.body.length === 0) {
+      return res.status(400).json({ message: 'Segment body must be video/mp2t.' });
+    }
+
+    const access = await getStreamAccess(id, req.user.id);
+    if (access === null) {
+      return res.status(404).json({ message: 'Match not found.' });
+    }
+    if (access === 'forbidden') {
+      return res.status(403).json({ message: 'You are not a participant of this match.' });
+    }
+    if (access === 'closed') {
+      return res.status(410).json({ message: 'Match is no longer accepting live evidence.' });
+    }
+
+    const result = await store.writeSegment(id, req.user.id, sequence, req.body);
+    if (result === 'busy') {
+      res.set('Retry-After', String(RETRY_AFTER_SECONDS));
+      return res.status(503).json({ message: 'Ingest is busy, retry shortly.' });
+    }
+    if (result === 'quota') {
+      return res.status(413).json({ message: 'Live evidence stream is at its size limit.' });
+    }
+    if (result === 'duplicate') {
+      return res.status(409).json({ message: 'Segment already received.', sequence });
+    }
+
+    res.status(201).json({ sequence });
+  } catch (error) {
+    console.error('[LiveEvidenceController][ingestLiveSegment] Error:', error.message, error.stack);
+    const { status, body } = mapControllerError(error);
+    res.status(status).json(body);
+  }
+};
+
+// POST /api/matches/:id/live/complete — { lastSequence, droppedSegments }
+const completeLiveStream = async (req, res) => {
+  try {
+    const id = parseId(req.params.id);
+    if (id === null) {
+      return res.status(400).json({ message: 'Invalid match id.' });
+    }
+
+    // Completing is still allowed once the match is over: the device drains after the result
+    const access = await getStreamAccess(id, req.user.id);
+    if (access === null) {
+      return res.status(404).json({ message: 'Match not found.' });
+    }
+    if (access === 'forbidden') {
+      return res.status(403).json({ message: 'You are not a participant of this match.' });
+    }
+
+    const summary = await store.completeStream(id, req.user.id, {
+      lastSequence: req.body?.lastSequence,
+      droppedSegments: req.body?.droppedSegments,
+    });
+    participantCache.delete(`${id}:${req.user.id}`);
+
+    res.json({ message: 'Live stream completed.', ...summary });
+  } catch (error) {
+    console.error('[LiveEvidenceController][completeLiveStream] Error:', error.message, error.stack);
+    const { status, body } = mapControllerError(error);
+    res.status(status).json(body);
+  }
+};
+
+// GET /api/admin/matches/:id/live — streams per participant with their segment sequences
+const getLiveStreams = async (req, res) => {
+  try {
+    const matchId = parseId(req.params.id);
+    if (matchId === null) {
+      return res.status(400).json({ message: 'Invalid match id.' });
+    }
+
+    const streams = await store.getStreams(matchId);
+    res.json({ matchId, streams });
+  } catch (error) {
+    console.error('[LiveEvidenceController][getLiveStreams] Error:', error.message, error.stack);
+    const { status, body } = mapControllerError(error);
+    res.status(status).json(body);
+  }
+};
+
+// GET /api/admin/matches/:id/live/:userId/segments/:seq
+const getLiveSegment = async (req, res) => {
+  try {
+    const matchId = parseId(req.params.id);
+    const userId = parseId(req.params.userId);
+    const sequence = parseSequence(req.params.seq);
+    if (matchId === null || userId === null || sequence === null) {
+      return res.status(400).json({ message: 'Invalid segment reference.' });
+    }
+
+    res.type('video/mp2t');
+    res.sendFile(store.segmentPath(matchId, userId, sequence), (error) => {
+      if (error && !res.headersSent) {
+        res.status(404).json({ message: 'Segment not found.' });
+      }
+    });
+  } catch (error) {
+    console.error('[LiveEvidenceController][getLiveSegment] Error:', error.message, error.stack);
+    const { status, body } = mapControllerError(error);
+    res.status(status).json(body);
+  }
+};
+
+// Scheduled: removes live evidence of matches not streamed to within the retention period
+const cleanupLiveEvidence = async () => {
+  try {
+    const removed = await store.removeOlderThan(RETENTION_DAYS * 24 * 60 * 60 * 1000);
+    if (removed.length > 0) {
+      console.log(`[LiveEvidenceController][cleanupLiveEvidence] Removed live evidence of ${removed.length} matches`);
+    }
+    return removed;
+  } catch (error) {
+    console.error('[LiveEvidenceController][cleanupLiveEvidence] Error:', error.message, error.stack);
+    return [];
+  }
+};
+
+module.exports = {
+  cleanupLiveEvidence,
+  ingestLiveSegment,
+  completeLiveStream,
+  getLiveStreams,
+  getLiveSegment,
+};
@@ -0,0 +1,53 @@
+const recordingTelemetry = require('../services/recordingTelemetryService');
+const { MAX_BATCH_SIZE } = require('../services/recordingTelemetryService');
+const { mapControllerError } = require('../utils/mapControllerError');
+
+const MAX_SUMMARY_DAYS = 365;
+
+// POST /api/telemetry/recording-sessions — batch of session summaries from the recorder.
+// 400/413/422 tell the device to drop the batch; anything else makes it retry later.
+const ingestRecordingSessions = async (req, res) => {
+  try {
+    const { sessions } = req.body || {};
+    if (!Array.isArray(sessions) || sessions.length === 0) {
+      return res.status(400).json({ message: 'sessions must be a non-empty array.' });
+    }
+    if (sessions.length > MAX_BATCH_SIZE) {
+      return res.status(413).json({ message: `At most ${MAX_BATCH_SIZE} sessions per batch.` });
+    }
+
+    const result = await recordingTelemetry.recordSessions(req.user.id, sessions);
+    if (result.accepted === 0) {
+      return res.status(422).json({ message: 'No valid sessions in batch.', ...result });
+    }
+    res.status(202).json(result);
+  } catch (error) {
+    console.error('[TelemetryController][ingestRecordingSessions] Error:', error.message, error.stack);
+    const { status, body } = mapControllerError(error);
+    res.status(status).json(body);
+  }
+};
+
+// GET /api/admin/telemetry/recording-sessions/by-model?days=30&minSessions=5
+const getRecordingStatsByModel = async (req, res) => {
+  try {
+    const days = Number(req.query.days || 30);
+    const minSessions = Number(req.query.minSessions || 1);
+    if (!Number.isInteger(days) || days < 1 || days > MAX_SUMMARY_DAYS
+        || !Number.isInteger(minSessions) || minSessions < 1) {
+      return res.status(400).json({ message: 'Invalid days or minSessions.' });
+    }
+
+    const models = await recordingTelemetry.summarizeByModel({ days, minSessions });
+    res.json({ days, models });
+  } catch (error) {
+    console.error('[TelemetryController][getRecordingStatsByModel] Error:', error.message, error.stack);
+    const { status, body } = mapControllerError(error);
+    res.status(status).json(body);
+  }
+};
+
+module.exports = {
+  ingestRecordingSessions,
+  getRecordingStatsByModel,
+};
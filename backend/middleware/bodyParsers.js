@@ -0,0 +1,22 @@
+const express = require('express');
+const { MAX_BATCH_SIZE } = require('../services/recordingTelemetryService');
+
+// Requests are small JSON documents; the limit keeps oversized bodies out cheaply
+const DEFAULT_JSON_LIMIT = '10kb';
+
+// A session summary is about 0.5 KB, and up to 2 KB with a long failure cause, so a full
+// telemetry batch needs far more than the default. Room for MAX_BATCH_SIZE of the largest.
+const TELEMETRY_JSON_LIMIT = `${MAX_BATCH_SIZE * 2}kb`;
+
+// JSON body parsers, in order. The telemetry parser runs first; the global one then sees
+// the body as already parsed and leaves it alone.
+const applyBodyParsers = (app) => {
+  app.use('/api/telemetry', express.json({ limit: TELEMETRY_JSON_LIMIT }));
+  app.use(express.json({ limit: DEFAULT_JSON_LIMIT }));
+};
+
+module.exports = {
+  applyBodyParsers,
+  DEFAULT_JSON_LIMIT,
+  TELEMETRY_JSON_LIMIT,
+};
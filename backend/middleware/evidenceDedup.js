@@ -0,0 +1,52 @@
+const path = require('path');
+const evidenceStore = require('../services/evidenceStore');
+const { UPLOAD_BASE_DIR } = require('./uploadMiddleware');
+
+// Runs after uploadSingle('evidence'). An uploaded file is stored under its content hash
+// (reusing an identical earlier upload); a request that only carries evidence_sha256 is
+// resolved to a file the same user uploaded before. Either way controllers see a regular
+// req.file.
+const storeEvidenceByHash = async (req, res, next) => {
+  try {
+    if (req.file) {
+      const { record, deduplicated } = await evidenceStore.storeUpload(req.file, req.user?.id);
+      req.file.filename = record.filename;
+      req.file.path = path.join(UPLOAD_BASE_DIR, record.filename);
+      req.file.deduplicated = deduplicated;
+      return next();
+    }
+
+    const sha256 = req.body?.evidence_sha256;
+    if (!sha256) {
+      return next();
+    }
+    if (!evidenceStore.isValidHash(sha256)) {
+      return res.status(400).json({ message: 'evidence_sha256 must be a lowercase hex SHA-256.' });
+    }
+
+    const record = await evidenceStore.findByHash(sha256, { uploadedBy: req.user.id });
+    if (!record) {
+      return res.status(404).json({
+        code: 'EVIDENCE_NOT_FOUND',
+        message: 'No stored evidence matches this hash. Upload the file instead.',
+      });
+    }
+
+    req.file = {
+      fieldname: 'evidence',
+      filename: record.filename,
+      path: path.join(UPLOAD_BASE_DIR, record.filename),
+      mimetype: record.mime_type,
+      size: Number(record.size),
+      deduplicated: true,
+    };
+    next();
+  } catch (error) {
+    console.error('[EvidenceDedup] Error:', error.message, error.stack);
+    res.status(500).json({ message: 'Failed to store evidence.' });
+  }
+};
+
+module.exports = {
+  storeEvidenceByHash,
+};
@@ -62,6 +62,7 @@ const fileFilter = (req, file, cb) => {
     'video/mp4',
     'video/avi',
     'video/mov',
+    'video/mp2t',
     'video/wmv',
     'application/pdf'
   ];
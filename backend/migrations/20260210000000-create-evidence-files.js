@@ -0,0 +1,50 @@
+'use strict';
+/** @type {import('sequelize-cli').Migration} */
+module.exports = {
+  async up(queryInterface, Sequelize) {
+    await queryInterface.createTable('evidence_files', {
+      id: {
+        allowNull: false,
+        autoIncrement: true,
+        primaryKey: true,
+        type: Sequelize.INTEGER
+      },
+      sha256: {
+        type: Sequelize.STRING(64),
+        allowNull: false,
+        unique: true
+      },
+      filename: {
+        type: Sequelize.STRING,
+        allowNull: false
+      },
+      mime_type: {
+        type: Sequelize.STRING,
+        allowNull: true
+      },
+      size: {
+        type: Sequelize.BIGINT,
+        allowNull: false
+      },
+      uploaded_by_user_id: {
+        type: Sequelize.INTEGER,
+        allowNull: true,
+        references: { model: 'users', key: 'id' },
+        onDelete: 'SET NULL'
+      },
+      created_at: {
+        allowNull: false,
+        type: Sequelize.DATE,
+        defaultValue: Sequelize.literal('CURRENT_TIMESTAMP')
+      },
+      updated_at: {
+        allowNull: false,
+        type: Sequelize.DATE,
+        defaultValue: Sequelize.literal('CURRENT_TIMESTAMP')
+      }
+    });
+  },
+  async down(queryInterface, Sequelize) {
+    await queryInterface.dropTable('evidence_files');
+  }
+};
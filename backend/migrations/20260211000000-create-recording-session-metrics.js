@@ -0,0 +1,132 @@
+'use strict';
+/** @type {import('sequelize-cli').Migration} */
+module.exports = {
+  async up(queryInterface, Sequelize) {
+    await queryInterface.createTable('recording_session_metrics', {
+      id: {
+        allowNull: false,
+        autoIncrement: true,
+        primaryKey: true,
+        type: Sequelize.INTEGER
+      },
+      session_id: {
+        type: Sequelize.STRING(64),
+        allowNull: false,
+        unique: true
+      },
+      user_id: {
+        type: Sequelize.INTEGER,
+        allowNull: true,
+        references: { model: 'users', key: 'id' },
+        onDelete: 'SET NULL'
+      },
+      started_at: {
+        type: Sequelize.DATE,
+        allowNull: false
+      },
+      device_model: {
+        type: Sequelize.STRING,
+        allowNull: false
+      },
+      manufacturer: {
+        type: Sequelize.STRING,
+        allowNull: true
+      },
+      sdk_int: {
+        type: Sequelize.INTEGER,
+        allowNull: true
+      },
+      codec: {
+        type: Sequelize.STRING,
+        allowNull: true
+      },
+      bit_rate: {
+        type: Sequelize.INTEGER,
+        allowNull: true
+      },
+      encrypted: {
+        type: Sequelize.BOOLEAN,
+        allowNull: false,
+        defaultValue: false
+      },
+      streamed: {
+        type: Sequelize.BOOLEAN,
+        allowNull: false,
+        defaultValue: false
+      },
+      prewarmed: {
+        type: Sequelize.BOOLEAN,
+        allowNull: false,
+        defaultValue: false
+      },
+      start_latency_ms: {
+        type: Sequelize.INTEGER,
+        allowNull: true
+      },
+      duration_ms: {
+        type: Sequelize.BIGINT,
+        allowNull: false,
+        defaultValue: 0
+      },
+      bytes_per_minute: {
+        type: Sequelize.BIGINT,
+        allowNull: false,
+        defaultValue: 0
+      },
+      frames: {
+        type: Sequelize.INTEGER,
+        allowNull: false,
+        defaultValue: 0
+      },
+      dropped_frames: {
+        type: Sequelize.INTEGER,
+        allowNull: false,
+        defaultValue: 0
+      },
+      frame_handoff_avg_ms: {
+        type: Sequelize.FLOAT,
+        allowNull: true
+      },
+      frame_handoff_p95_ms: {
+        type: Sequelize.FLOAT,
+        allowNull: true
+      },
+      sink_write_avg_ms: {
+        type: Sequelize.FLOAT,
+        allowNull: true
+      },
+      sink_write_p95_ms: {
+        type: Sequelize.FLOAT,
+        allowNull: true
+      },
+      thermal_steps: {
+        type: Sequelize.INTEGER,
+        allowNull: false,
+        defaultValue: 0
+      },
+      max_thermal_status: {
+        type: Sequelize.INTEGER,
+        allowNull: true
+      },
+      failure_cause: {
+        type: Sequelize.STRING,
+        allowNull: true
+      },
+      created_at: {
+        allowNull: false,
+        type: Sequelize.DATE,
+        defaultValue: Sequelize.literal('CURRENT_TIMESTAMP')
+      },
+      updated_at: {
+        allowNull: false,
+        type: Sequelize.DATE,
+        defaultValue: Sequelize.literal('CURRENT_TIMESTAMP')
+      }
+    });
+    await queryInterface.addIndex('recording_session_metrics', ['device_model']);
+    await queryInterface.addIndex('recording_session_metrics', ['started_at']);
+  },
+  async down(queryInterface, Sequelize) {
+    await queryInterface.dropTable('recording_session_metrics');
+  }
+};
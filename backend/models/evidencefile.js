@@ -0,0 +1,53 @@
+'use strict';
+const { Model } = require('sequelize');
+
+// One row per distinct evidence upload, keyed by the SHA-256 of its bytes. Matches and
+// disputes keep referencing the file through evidence_url; this index is what lets a
+// second report of the same clip reuse the stored file instead of uploading it again.
+module.exports = (sequelize, DataTypes) => {
+  class EvidenceFile extends Model {
+    static associate(models) {
+      EvidenceFile.belongsTo(models.User, {
+        foreignKey: 'uploaded_by_user_id',
+        as: 'uploaded_by'
+      });
+    }
+  }
+
+  EvidenceFile.init(
+    {
+      sha256: {
+        type: DataTypes.STRING(64),
+        allowNull: false,
+        unique: true
+      },
+      filename: {
+        type: DataTypes.STRING,
+        allowNull: false
+      },
+      mime_type: {
+        type: DataTypes.STRING,
+        allowNull: true
+      },
+      size: {
+        type: DataTypes.BIGINT,
+        allowNull: false
+      },
+      uploaded_by_user_id: {
+        type: DataTypes.INTEGER,
+        allowNull: true
+      }
+    },
+    {
+      sequelize,
+      modelName: 'EvidenceFile',
+      tableName: 'evidence_files',
+      underscored: true,
+      timestamps: true,
+      createdAt: 'created_at',
+      updatedAt: 'updated_at'
+    }
+  );
+
+  return EvidenceFile;
+};
@@ -0,0 +1,133 @@
+'use strict';
+const { Model } = require('sequelize');
+
+// Performance summary of one screen recording session, uploaded in batches by the Android
+// recorder. Queried per device model to tune capture defaults.
+module.exports = (sequelize, DataTypes) => {
+  class RecordingSessionMetric extends Model {
+    static associate(models) {
+      RecordingSessionMetric.belongsTo(models.User, {
+        foreignKey: 'user_id',
+        as: 'user'
+      });
+    }
+  }
+
+  RecordingSessionMetric.init(
+    {
+      session_id: {
+        type: DataTypes.STRING(64),
+        allowNull: false,
+        unique: true
+      },
+      user_id: {
+        type: DataTypes.INTEGER,
+        allowNull: true
+      },
+      started_at: {
+        type: DataTypes.DATE,
+        allowNull: false
+      },
+      device_model: {
+        type: DataTypes.STRING,
+        allowNull: false
+      },
+      manufacturer: {
+        type: DataTypes.STRING,
+        allowNull: true
+      },
+      sdk_int: {
+        type: DataTypes.INTEGER,
+        allowNull: true
+      },
+      codec: {
+        type: DataTypes.STRING,
+        allowNull: true
+      },
+      bit_rate: {
+        type: DataTypes.INTEGER,
+        allowNull: true
+      },
+      encrypted: {
+        type: DataTypes.BOOLEAN,
+        allowNull: false,
+        defaultValue: false
+      },
+      streamed: {
+        type: DataTypes.BOOLEAN,
+        allowNull: false,
+        defaultValue: false
+      },
+      prewarmed: {
+        type: DataTypes.BOOLEAN,
+        allowNull: false,
+        defaultValue: false
+      },
+      start_latency_ms: {
+        type: DataTypes.INTEGER,
+        allowNull: true
+      },
+      duration_ms: {
+        type: DataTypes.BIGINT,
+        allowNull: false,
+        defaultValue: 0
+      },
+      bytes_per_minute: {
+        type: DataTypes.BIGINT,
+        allowNull: false,
+        defaultValue: 0
+      },
+      frames: {
+        type: DataTypes.INTEGER,
+        allowNull: false,
+        defaultValue: 0
+      },
+      dropped_frames: {
+        type: DataTypes.INTEGER,
+        allowNull: false,
+        defaultValue: 0
+      },
+      frame_handoff_avg_ms: {
+        type: DataTypes.FLOAT,
+        allowNull: true
+      },
+      frame_handoff_p95_ms: {
+        type: DataTypes.FLOAT,
+        allowNull: true
+      },
+      sink_write_avg_ms: {
+        type: DataTypes.FLOAT,
+        allowNull: true
+      },
+      sink_write_p95_ms: {
+        type: DataTypes.FLOAT,
+        allowNull: true
+      },
+      thermal_steps: {
+        type: DataTypes.INTEGER,
+        allowNull: false,
+        defaultValue: 0
+      },
+      max_thermal_status: {
+        type: DataTypes.INTEGER,
+        allowNull: true
+      },
+      failure_cause: {
+        type: DataTypes.STRING,
+        allowNull: true
+      }
+    },
+    {
+      sequelize,
+      modelName: 'RecordingSessionMetric',
+      tableName: 'recording_session_metrics',
+      underscored: true,
+      timestamps: true,
+      createdAt: 'created_at',
+      updatedAt: 'updated_at',
+      indexes: [{ fields: ['device_model'] }, { fields: ['started_at'] }]
+    }
+  );
+
+  return RecordingSessionMetric;
+};
@@ -11,6 +11,8 @@ const {
   addGameRules,
   updateGameRule,
 } = require('../controllers/gameController');
+const { getLiveStreams, getLiveSegment } = require('../controllers/liveEvidenceController');
+const { getRecordingStatsByModel } = require('../controllers/telemetryController');
 const { authenticateToken, requireAdmin } = require('../middleware/auth');
 const { validateDisputeResolution, validateTournamentStatusUpdate } = require('../middleware/validation');
 
@@ -34,5 +36,8 @@ router.post('/games/:id/modes', addGameModes);
 router.patch('/game-modes/:id', updateGameMode);
 router.post('/games/:id/rules', addGameRules);
 router.patch('/game-rules/:id', updateGameRule);
+router.get('/matches/:id/live', getLiveStreams);
+router.get('/matches/:id/live/:userId/segments/:seq', getLiveSegment);
+router.get('/telemetry/recording-sessions/by-model', getRecordingStatsByModel);
 
 module.exports = router;
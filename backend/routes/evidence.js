@@ -0,0 +1,12 @@
+const express = require('express');
+const { checkEvidence } = require('../controllers/evidenceController');
+const { authenticateToken } = require('../middleware/auth');
+
+const router = express.Router();
+
+router.use(authenticateToken);
+
+// Lets clients skip uploading evidence the server already has
+router.head('/:sha256', checkEvidence);
+
+module.exports = router;
@@ -12,6 +12,8 @@ const {
 const { validateScoreReport, validateDispute } = require('../middleware/validation');
 const { authenticateToken } = require('../middleware/auth');
 const { uploadSingle } = require('../middleware/uploadMiddleware');
+const { storeEvidenceByHash } = require('../middleware/evidenceDedup');
+const { ingestLiveSegment, completeLiveStream } = require('../controllers/liveEvidenceController');
 
 const router = express.Router();
 
@@ -31,6 +33,7 @@ router.post('/:id/confirm-active',confirmActive);
 router.post(
   '/:id/report-score',
   uploadSingle('evidence'),        // handle file upload
+  storeEvidenceByHash,             // store by content hash, or resolve evidence_sha256
   validateScoreReport,             // validate input
   reportScore                      // controller
 );
@@ -42,8 +45,17 @@ router.post('/:id/confirm-score', confirmScore);
 router.post(
   '/:id/dispute',
   uploadSingle('evidence'),        // handle file upload
+  storeEvidenceByHash,             // store by content hash, or resolve evidence_sha256
   validateDispute,                 // validate input
   disputeScore                     // controller
 );
 
+// Live evidence streamed from the recorder while the match is played
+router.put(
+  '/:id/live/segments/:seq',
+  express.raw({ type: 'video/mp2t', limit: '8mb' }),  // raw MPEG-TS segment
+  ingestLiveSegment
+);
+router.post('/:id/live/complete', completeLiveStream);
+
 module.exports = router;
\ No newline at end of file
@@ -0,0 +1,12 @@
+const express = require('express');
+const { ingestRecordingSessions } = require('../controllers/telemetryController');
+const { authenticateToken } = require('../middleware/auth');
+
+const router = express.Router();
+
+router.use(authenticateToken);
+
+// Session summaries queued on the device and uploaded in batches by the native recorder
+router.post('/recording-sessions', ingestRecordingSessions);
+
+module.exports = router;
@@ -28,14 +28,18 @@ const authRoutes = require('./routes/auth');
 const friendRoutes = require('./routes/friends');
 const verificationRoutes = require('./routes/verification');
 const supportRoutes = require('./routes/support');
+const evidenceRoutes = require('./routes/evidence');
+const telemetryRoutes = require('./routes/telemetry');
 const requireCurrency = require('./middleware/requireCurrency');
 const attachResponseCurrency = require('./middleware/attachResponseCurrency');
+const { applyBodyParsers } = require('./middleware/bodyParsers');
 
 // ⚙️ Services
 const WebSocketService = require('./services/websocketService');
 const AutoConfirmService = require('./services/autoConfirmService');
 const AutoDeleteTournamentService = require('./services/autoDeleteTournamentService');
 const FileCleanupService = require('./services/fileCleanupService');
+const { cleanupLiveEvidence } = require('./controllers/liveEvidenceController');
 const { buildErrorResponse } = require('./utils/errorResponse');
 const MatchDeadlineService = require('./services/matchDeadlineService');
 const { pingRedis } = require('./config/redis');
@@ -99,8 +103,8 @@ app.options('*', cors(corsOptions));
 // Serve uploads
 app.use('/uploads', express.static(path.join(__dirname, 'uploads')));
 
-// Body parser
-app.use(express.json({ limit: '10kb' }));
+// Body parsers (telemetry batches get a larger limit)
+applyBodyParsers(app);
 app.set('trust proxy', true);
 
 // Rate limiting
@@ -163,6 +167,8 @@ app.use('/api/transactions', transactions);
 app.use('/api/friends', friendRoutes);
 app.use('/api/auth/verification', verificationRoutes);
 app.use('/api/support', supportRoutes);
+app.use('/api/evidence', evidenceRoutes);
+app.use('/api/telemetry', telemetryRoutes);
 
 /* =========================
    Health checks
@@ -218,6 +224,12 @@ schedule.scheduleJob('0 2 * * *', () => {
   FileCleanupService.cleanupOldFiles(30); // keep files for 30 days
 });
 
+// Daily live evidence cleanup at 2:30 AM
+schedule.scheduleJob('30 2 * * *', () => {
+  console.log('🧹 Running live evidence cleanup...');
+  cleanupLiveEvidence();
+});
+
 /* =========================
    Startup + graceful shutdown
    ========================= */
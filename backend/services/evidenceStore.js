@@ -0,0 +1,91 @@
+const fs = require('fs');
+const path = require('path');
+const crypto = require('crypto');
+const { EvidenceFile } = require('../models');
+const { UPLOAD_BASE_DIR } = require('../middleware/uploadMiddleware');
+
+const SHA256_PATTERN = /^[a-f0-9]{64}$/;
+
+// Content-addressed evidence: each distinct file is stored once as "<sha256><ext>" in the
+// uploads directory and indexed in evidence_files. Reports and disputes that attach the
+// same bytes end up with the same evidence_url.
+//
+// Knowing a hash is not proof of having the file, so a bare hash reference only resolves
+// to evidence the same user uploaded. Anyone else uploads the bytes, which are still
+// stored once.
+class EvidenceStore {
+  isValidHash(sha256) {
+    return typeof sha256 === 'string' && SHA256_PATTERN.test(sha256);
+  }
+
+  hashFile(filePath) {
+    return new Promise((resolve, reject) => {
+      const hash = crypto.createHash('sha256');
+      fs.createReadStream(filePath)
+        .on('data', (chunk) => hash.update(chunk))
+        .on('end', () => resolve(hash.digest('hex')))
+        .on('error', reject);
+    });
+  }
+
+  /**
+   * Returns the stored evidence for a hash, or null. With uploadedBy, only evidence that
+   * user uploaded is returned. Rows whose file has been cleaned up are dropped. A hit
+   * refreshes the file's mtime so age-based cleanup keeps it around for the new reference.
+   */
+  async findByHash(sha256, { uploadedBy } = {}) {
+    const where = uploadedBy === undefined ? { sha256 } : { sha256, uploaded_by_user_id: uploadedBy };
+    const record = await EvidenceFile.findOne({ where });
+    if (!record) return null;
+
+    const filePath = path.join(UPLOAD_BASE_DIR, record.filename);
+    try {
+      const now = new Date();
+      await fs.promises.utimes(filePath, now, now);
+    } catch (error) {
+      if (error.code !== 'ENOENT') throw error;
+      await record.destroy();
+      return null;
+    }
+    return record;
+  }
+
+  /**
+   * Moves a multer upload to its content address, or discards it if the same bytes are
+   * already stored. Resolves to { record, deduplicated }.
+   */
+  async storeUpload(file, userId) {
+    const sha256 = await this.hashFile(file.path);
+
+    const existing = await this.findByHash(sha256);
+    if (existing) {
+      await fs.promises.unlink(file.path);
+      return { record: existing, deduplicated: true };
+    }
+
+    const filename = `${sha256}${path.extname(file.filename).toLowerCase()}`;
+    await fs.promises.rename(file.path, path.join(UPLOAD_BASE_DIR, filename));
+
+    try {
+      const record = await EvidenceFile.create({
+        sha256,
+        filename,
+        mime_type: file.mimetype,
+        size: file.size,
+        uploaded_by_user_id: userId || null,
+      });
+      return { record, deduplicated: false };
+    } catch (error) {
+      if (error.name !== 'SequelizeUniqueConstraintError') throw error;
+
+      // A concurrent upload of the same bytes got there first
+      const record = await EvidenceFile.findOne({ where: { sha256 } });
+      if (record.filename !== filename) {
+        await fs.promises.unlink(path.join(UPLOAD_BASE_DIR, filename)).catch(() => {});
+      }
+      return { record, deduplicated: true };
+    }
+  }
+}
+
+module.exports = new EvidenceStore();
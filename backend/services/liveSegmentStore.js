@@ -0,0 +1,227 @@
+const crypto = require('crypto');
+const fs = require('fs');
+const path = require('path');
+
+// Live evidence segments streamed by the recorder while a match is played.
+// Layout: <baseDir>/<matchId>/<userId>/<sequence>.ts, plus complete.json once the
+// device has finished the stream. Segments are concatenated in sequence order for
+// playback; a missing sequence means the device dropped it under network pressure.
+// Match directories are removed once they haven't been written to for the retention period.
+
+const SEGMENT_SUFFIX = '.ts';
+const COMPLETE_FILE = 'complete.json';
+
+// Backpressure: segments being written at once, per stream and across all streams.
+// Beyond this the device is told to retry, and its spool absorbs the delay.
+const MAX_WRITES_PER_STREAM = 2;
+const MAX_WRITES_TOTAL = 32;
+
+// A 30 minute match at 8 Mbps is about 1.8 GB; beyond this a stream is refused more segments
+const MAX_STREAM_BYTES = Number(process.env.LIVE_EVIDENCE_MAX_STREAM_BYTES) || 3 * 1024 * 1024 * 1024;
+
+const padSequence = (sequence) => String(sequence).padStart(8, '0');
+
+class LiveSegmentStore {
+  constructor(baseDir, { maxStreamBytes = MAX_STREAM_BYTES } = {}) {
+    this.baseDir = baseDir;
+    this.maxStreamBytes = maxStreamBytes;
+    this.writes = new Map(); // streamKey -> in-progress write count
+    this.totalWrites = 0;
+    // streamKey -> { bytes, touchedAt }; rebuilt from disk when missing, so safe to evict
+    this.streamBytes = new Map();
+  }
+
+  streamDir(matchId, userId) {
+    return path.join(this.baseDir, String(matchId), String(userId));
+  }
+
+  segmentPath(matchId, userId, sequence) {
+    return path.join(this.streamDir(matchId, userId), `${padSequence(sequence)}${SEGMENT_SUFFIX}`);
+  }
+
+  /**
+   * Stores one segment. Resolves to 'stored', 'duplicate' (already have this sequence),
+   * 'busy' (too many concurrent writes; the caller should ask the device to retry) or
+   * 'quota' (the stream already holds its maximum size).
+   */
+  async writeSegment(matchId, userId, sequence, data) {
+    const key = `${matchId}:${userId}`;
+    const streamWrites = this.writes.get(key) || 0;
+    if (streamWrites >= MAX_WRITES_PER_STREAM || this.totalWrites >= MAX_WRITES_TOTAL) {
+      return 'busy';
+    }
+
+    this.writes.set(key, streamWrites + 1);
+    this.totalWrites++;
+    let usage = null;
+    try {
+      usage = await this.streamUsage(matchId, userId);
+      if (usage.bytes + data.length > this.maxStreamBytes) {
+        usage = null;
+        return 'quota';
+      }
+      // Reserved up front so concurrent writes can't overshoot the cap together
+      usage.bytes += data.length;
+      usage.touchedAt = Date.now();
+
+      const target = this.segmentPath(matchId, userId, sequence);
+      await fs.promises.mkdir(path.dirname(target), { recursive: true });
+
+      // Write-then-rename so a reader never sees a partial segment. The temp name is unique
+      // per attempt, so concurrent retries of one sequence end in a duplicate, not EEXIST.
+      const temp = `${target}.${crypto.randomUUID()}.tmp`;
+      await fs.promises.writeFile(temp, data, { flag: 'wx' });
+      try {
+        await fs.promises.link(temp, target);
+      } catch (error) {
+        if (error.code === 'EEXIST') return 'duplicate';
+        throw error;
+      } finally {
+        await fs.promises.unlink(temp).catch(() => {});
+      }
+      usage = null;
+      return 'stored';
+    } finally {
+      // Release the reservation of a segment that wasn't stored
+      if (usage) usage.bytes -= data.length;
+      const remaining = this.writes.get(key) - 1;
+      if (remaining > 0) this.writes.set(key, remaining);
+      else this.writes.delete(key);
+      this.totalWrites--;
+    }
+  }
+
+  async streamUsage(matchId, userId) {
+    const key = `${matchId}:${userId}`;
+    let usage = this.streamBytes.get(key);
+    if (!usage) {
+      const bytes = await this.diskBytes(this.streamDir(matchId, userId));
+      usage = this.streamBytes.get(key) || { bytes, touchedAt: Date.now() };
+      this.streamBytes.set(key, usage);
+    }
+    return usage;
+  }
+
+  async diskBytes(dir) {
+    let files;
+    try {
+      files = await fs.promises.readdir(dir);
+    } catch (error) {
+      if (error.code === 'ENOENT') return 0;
+      throw error;
+    }
+    let bytes = 0;
+    for (const file of files) {
+      if (!file.endsWith(SEGMENT_SUFFIX)) continue;
+      bytes += (await fs.promises.stat(path.join(dir, file))).size;
+    }
+    return bytes;
+  }
+
+  /**
+   * Forgets the size of streams that haven't received a segment for idleMs, e.g. devices
+   * that never completed. Their size is read from disk again if they resume.
+   */
+  evictIdle(idleMs, now = Date.now()) {
+    for (const [key, usage] of this.streamBytes) {
+      if (now - usage.touchedAt > idleMs && !this.writes.has(key)) {
+        this.streamBytes.delete(key);
+      }
+    }
+  }
+
+  /**
+   * Deletes every match whose streams haven't been written to for maxAgeMs.
+   * Resolves to the ids of the removed matches.
+   */
+  async removeOlderThan(maxAgeMs, now = Date.now()) {
+    let matchDirs;
+    try {
+      matchDirs = await fs.promises.readdir(this.baseDir);
+    } catch (error) {
+      if (error.code === 'ENOENT') return [];
+      throw error;
+    }
+
+    const removed = [];
+    for (const matchId of matchDirs) {
+      const matchDir = path.join(this.baseDir, matchId);
+      if (await this.newestWrite(matchDir) > now - maxAgeMs) continue;
+
+      await fs.promises.rm(matchDir, { recursive: true, force: true });
+      for (const key of this.streamBytes.keys()) {
+        if (key.startsWith(`${matchId}:`)) this.streamBytes.delete(key);
+      }
+      removed.push(matchId);
+    }
+    return removed;
+  }
+
+  async newestWrite(dir) {
+    const stat = await fs.promises.stat(dir);
+    let newest = stat.mtimeMs;
+    if (stat.isDirectory()) {
+      for (const entry of await fs.promises.readdir(dir)) {
+        newest = Math.max(newest, await this.newestWrite(path.join(dir, entry)));
+      }
+    }
+    return newest;
+  }
+
+  async completeStream(matchId, userId, { lastSequence, droppedSegments }) {
+    const dir = this.streamDir(matchId, userId);
+    await fs.promises.mkdir(dir, { recursive: true });
+    const summary = {
+      lastSequence: Number.isInteger(lastSequence) ? lastSequence : null,
+      droppedSegments: Number.isInteger(droppedSegments) ? droppedSegments : 0,
+      completedAt: new Date().toISOString(),
+    };
+    await fs.promises.writeFile(path.join(dir, COMPLETE_FILE), JSON.stringify(summary));
+    this.streamBytes.delete(`${matchId}:${userId}`);
+    return summary;
+  }
+
+  /**
+   * Lists every stream recorded for a match: one per participant device.
+   */
+  async getStreams(matchId) {
+    const matchDir = path.join(this.baseDir, String(matchId));
+    let userDirs;
+    try {
+      userDirs = await fs.promises.readdir(matchDir);
+    } catch (error) {
+      if (error.code === 'ENOENT') return [];
+      throw error;
+    }
+
+    const streams = [];
+    for (const userId of userDirs) {
+      const dir = path.join(matchDir, userId);
+      const files = await fs.promises.readdir(dir);
+
+      const segments = [];
+      let bytes = 0;
+      for (const file of files) {
+        if (!file.endsWith(SEGMENT_SUFFIX)) continue;
+        const stat = await fs.promises.stat(path.join(dir, file));
+        segments.push(Number(file.slice(0, -SEGMENT_SUFFIX.length)));
+        bytes += stat.size;
+      }
+      segments.sort((a, b) => a - b);
+
+      let complete = null;
+      if (files.includes(COMPLETE_FILE)) {
+        complete = JSON.parse(await fs.promises.readFile(path.join(dir, COMPLETE_FILE), 'utf8'));
+      }
+
+      streams.push({ userId: Number(userId), segments, bytes, complete });
+    }
+    return streams;
+  }
+}
+
+module.exports = {
+  LiveSegmentStore,
+  MAX_WRITES_PER_STREAM,
+  MAX_STREAM_BYTES,
+};
@@ -0,0 +1,136 @@
+const MAX_BATCH_SIZE = 100;
+const MAX_STRING_LENGTH = 255;
+
+// Sessions longer than this are clock errors, not recordings
+const MAX_DURATION_MS = 24 * 60 * 60 * 1000;
+
+const toInt = (value, max = Number.MAX_SAFE_INTEGER) => {
+  const number = Number(value);
+  return Number.isFinite(number) && number >= 0 ? Math.min(Math.round(number), max) : null;
+};
+
+// Null means "not measured" and must stay null: Number(null) is 0
+const toFloat = (value) => {
+  if (value === null || value === undefined) return null;
+  const number = Number(value);
+  return Number.isFinite(number) && number >= 0 ? number : null;
+};
+
+const toText = (value) => {
+  if (typeof value !== 'string') return null;
+  const text = value.trim();
+  return text ? text.slice(0, MAX_STRING_LENGTH) : null;
+};
+
+// Turns one session summary from the recorder into a row, or null if it is unusable.
+// Unknown fields are ignored and out-of-range numbers dropped, so an older or newer app
+// version never fails a whole batch.
+const normalizeSession = (raw, userId) => {
+  if (!raw || typeof raw !== 'object') return null;
+
+  const sessionId = toText(raw.sessionId);
+  const deviceModel = toText(raw.model);
+  const startedAt = toInt(raw.startedAt);
+  if (!sessionId || !deviceModel || !startedAt) return null;
+
+  const startLatencyMs = Number(raw.startLatencyMs);
+  const maxThermalStatus = Number(raw.maxThermalStatus);
+
+  return {
+    session_id: sessionId.slice(0, 64),
+    user_id: userId || null,
+    started_at: new Date(startedAt),
+    device_model: deviceModel,
+    manufacturer: toText(raw.manufacturer),
+    sdk_int: toInt(raw.sdkInt, 1000),
+    codec: toText(raw.codec),
+    bit_rate: toInt(raw.bitRate, 2 ** 31 - 1),
+    encrypted: raw.encrypted === true,
+    streamed: raw.streamed === true,
+    prewarmed: raw.prewarmed === true,
+    // -1 means the recorder never reached its first frame
+    start_latency_ms: startLatencyMs >= 0 ? toInt(startLatencyMs, 2 ** 31 - 1) : null,
+    duration_ms: toInt(raw.durationMs, MAX_DURATION_MS) || 0,
+    bytes_per_minute: toInt(raw.bytesPerMinute) || 0,
+    frames: toInt(raw.frames, 2 ** 31 - 1) || 0,
+    dropped_frames: toInt(raw.droppedFrames, 2 ** 31 - 1) || 0,
+    frame_handoff_avg_ms: toFloat(raw.frameHandoffAvgMs),
+    frame_handoff_p95_ms: toFloat(raw.frameHandoffP95Ms),
+    sink_write_avg_ms: toFloat(raw.sinkWriteAvgMs),
+    sink_write_p95_ms: toFloat(raw.sinkWriteP95Ms),
+    thermal_steps: toInt(raw.thermalSteps, 1000) || 0,
+    max_thermal_status: maxThermalStatus >= 0 ? toInt(maxThermalStatus, 100) : null,
+    failure_cause: toText(raw.failureCause),
+  };
+};
+
+class RecordingTelemetryService {
+  /**
+   * Stores a batch of session summaries. Sessions already stored (a batch resent after a
+   * lost response) are skipped. Resolves to { accepted, rejected }.
+   */
+  async recordSessions(userId, sessions) {
+    const { RecordingSessionMetric } = require('../models');
+
+    const rows = sessions.map((session) => normalizeSession(session, userId)).filter(Boolean);
+    if (rows.length > 0) {
+      await RecordingSessionMetric.bulkCreate(rows, { ignoreDuplicates: true });
+    }
+    return { accepted: rows.length, rejected: sessions.length - rows.length };
+  }
+
+  /**
+   * Per device model and codec over the last `days` days: session count, start latency,
+   * frame hand-off, dropped frame and thermal figures, and failures by cause.
+   */
+  async summarizeByModel({ days = 30, minSessions = 1 } = {}) {
+    const { sequelize } = require('../models');
+    const { QueryTypes } = require('sequelize');
+
+    const models = await sequelize.query(
+      `SELECT device_model, manufacturer, codec,
+              COUNT(*)::int AS sessions,
+              ROUND(AVG(start_latency_ms))::int AS start_latency_avg_ms,
+              ROUND(PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY start_latency_ms))::int AS start_latency_p95_ms,
+              ROUND(AVG(frame_handoff_avg_ms)::numeric, 2)::float AS frame_handoff_avg_ms,
+              ROUND(PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY frame_handoff_p95_ms)::numeric, 2)::float AS frame_handoff_p95_ms,
+              ROUND(PERCENTILE_CONT(0.95) WITHIN GROUP (ORDER BY sink_write_p95_ms)::numeric, 2)::float AS sink_write_p95_ms,
+              CASE WHEN SUM(frames) > 0
+                   THEN ROUND(SUM(dropped_frames)::numeric / (SUM(frames) + SUM(dropped_frames)), 4)::float
+                   ELSE 0 END AS dropped_frame_ratio,
+              ROUND(AVG(bytes_per_minute))::bigint AS bytes_per_minute_avg,
+              ROUND(AVG(thermal_steps)::numeric, 2)::float AS thermal_steps_avg,
+              MAX(max_thermal_status) AS max_thermal_status,
+              COUNT(failure_cause)::int AS failed_sessions
+         FROM recording_session_metrics
+        WHERE started_at >= NOW() - (:days || ' days')::interval
+        GROUP BY device_model, manufacturer, codec
+       HAVING COUNT(*) >= :minSessions
+        ORDER BY sessions DESC`,
+      { replacements: { days: String(days), minSessions }, type: QueryTypes.SELECT }
+    );
+
+    const failures = await sequelize.query(
+      `SELECT device_model, manufacturer, codec, failure_cause, COUNT(*)::int AS count
+         FROM recording_session_metrics
+        WHERE started_at >= NOW() - (:days || ' days')::interval
+          AND failure_cause IS NOT NULL
+        GROUP BY device_model, manufacturer, codec, failure_cause
+        ORDER BY count DESC`,
+      { replacements: { days: String(days) }, type: QueryTypes.SELECT }
+    );
+
+    return models.map((model) => ({
+      ...model,
+      failure_causes: failures
+        .filter((f) => f.device_model === model.device_model
+          && f.manufacturer === model.manufacturer
+          && f.codec === model.codec)
+        .map(({ failure_cause, count }) => ({ cause: failure_cause, count })),
+    }));
+  }
+}
+
+module.exports = new RecordingTelemetryService();
+module.exports.normalizeSession = normalizeSession;
+module.exports.MAX_BATCH_SIZE = MAX_BATCH_SIZE;
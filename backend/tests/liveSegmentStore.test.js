@@ -0,0 +1,72 @@
+const assert = require('assert');
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+
+const { LiveSegmentStore, MAX_WRITES_PER_STREAM } = require('../services/liveSegmentStore');
+
+(async () => {
+  const baseDir = fs.mkdtempSync(path.join(os.tmpdir(), 'live-segments-'));
+  const store = new LiveSegmentStore(baseDir);
+
+  try {
+    // Segments are stored by sequence and a repeated sequence is reported, not overwritten
+    assert.strictEqual(await store.writeSegment(7, 3, 0, Buffer.from('first')), 'stored');
+    assert.strictEqual(await store.writeSegment(7, 3, 2, Buffer.from('third')), 'stored');
+    assert.strictEqual(await store.writeSegment(7, 3, 0, Buffer.from('again')), 'duplicate');
+    assert.strictEqual(fs.readFileSync(store.segmentPath(7, 3, 0), 'utf8'), 'first');
+
+    // Retries of one sequence racing each other: one is stored, the rest are duplicates
+    const retries = await Promise.all([0, 1].map(() => store.writeSegment(7, 5, 0, Buffer.from('retry'))));
+    assert.deepStrictEqual(retries.sort(), ['duplicate', 'stored']);
+    assert.deepStrictEqual(fs.readdirSync(path.dirname(store.segmentPath(7, 5, 0))).filter((name) => name.endsWith('.tmp')), []);
+
+    // Concurrent writes past the per-stream limit are pushed back to the device
+    const burst = await Promise.all(
+      Array.from({ length: MAX_WRITES_PER_STREAM + 1 }, (_, i) =>
+        store.writeSegment(7, 4, i, Buffer.alloc(1024)))
+    );
+    assert.strictEqual(burst.filter((result) => result === 'busy').length, 1);
+    assert.strictEqual(await store.writeSegment(7, 4, MAX_WRITES_PER_STREAM, Buffer.alloc(1024)), 'stored');
+
+    await store.completeStream(7, 3, { lastSequence: 2, droppedSegments: 1 });
+
+    const streams = await store.getStreams(7);
+    const stream = streams.find((s) => s.userId === 3);
+    assert.deepStrictEqual(stream.segments, [0, 2]);
+    assert.strictEqual(stream.bytes, 'first'.length + 'third'.length);
+    assert.strictEqual(stream.complete.lastSequence, 2);
+    assert.strictEqual(stream.complete.droppedSegments, 1);
+    assert.strictEqual(streams.find((s) => s.userId === 4).complete, null);
+
+    assert.deepStrictEqual(await store.getStreams(8), []);
+
+    // A stream is refused segments past its byte cap, counting what is already on disk
+    const capped = new LiveSegmentStore(baseDir, { maxStreamBytes: 'first'.length + 'third'.length + 4 });
+    assert.strictEqual(await capped.writeSegment(7, 3, 3, Buffer.from('four')), 'stored');
+    assert.strictEqual(await capped.writeSegment(7, 3, 4, Buffer.from('5')), 'quota');
+    assert.strictEqual(fs.existsSync(capped.segmentPath(7, 3, 4)), false);
+
+    // Idle streams are forgotten and their size is read back from disk
+    capped.evictIdle(60 * 1000, Date.now() + 2 * 60 * 1000);
+    assert.strictEqual(capped.streamBytes.size, 0);
+    assert.strictEqual(await capped.writeSegment(7, 3, 4, Buffer.from('5')), 'quota');
+
+    // Matches not written to within the retention period are removed
+    assert.strictEqual(await store.writeSegment(9, 3, 0, Buffer.from('recent')), 'stored');
+    const old = new Date(Date.now() - 10 * 24 * 60 * 60 * 1000);
+    const oldDir = path.join(baseDir, '7');
+    for (const dir of [oldDir, ...fs.readdirSync(oldDir).map((user) => path.join(oldDir, user))]) {
+      for (const entry of fs.readdirSync(dir)) fs.utimesSync(path.join(dir, entry), old, old);
+      fs.utimesSync(dir, old, old);
+    }
+    assert.deepStrictEqual(await store.removeOlderThan(7 * 24 * 60 * 60 * 1000), ['7']);
+    assert.deepStrictEqual(await store.getStreams(7), []);
+    assert.strictEqual((await store.getStreams(9)).length, 1);
+  } finally {
+    fs.rmSync(baseDir, { recursive: true, force: true });
+  }
+})().catch((error) => {
+  console.error(error);
+  process.exit(1);
+});
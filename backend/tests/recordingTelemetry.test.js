@@ -0,0 +1,71 @@
+const assert = require('assert');
+
+const { normalizeSession } = require('../services/recordingTelemetryService');
+
+(() => {
+  const session = {
+    schemaVersion: 1,
+    sessionId: '7d1f0c2e-5b4a-4c61-9a0e-3f2b1c4d5e6f',
+    startedAt: 1760000000000,
+    model: 'Pixel 7',
+    manufacturer: 'Google',
+    sdkInt: 34,
+    codec: 'c2.exynos.h264.encoder',
+    bitRate: 8000000,
+    encrypted: true,
+    streamed: false,
+    prewarmed: true,
+    startLatencyMs: 212,
+    durationMs: 600000,
+    bytesPerMinute: 60000000,
+    frames: 17950,
+    droppedFrames: 50,
+    frameHandoffAvgMs: 1.42,
+    frameHandoffP95Ms: 3.1,
+    sinkWriteAvgMs: 0.2,
+    sinkWriteP95Ms: 0.6,
+    thermalSteps: 2,
+    maxThermalStatus: 2,
+    failureCause: null,
+    futureField: 'ignored',
+  };
+
+  const row = normalizeSession(session, 42);
+  assert.strictEqual(row.session_id, session.sessionId);
+  assert.strictEqual(row.user_id, 42);
+  assert.strictEqual(row.device_model, 'Pixel 7');
+  assert.strictEqual(row.started_at.getTime(), session.startedAt);
+  assert.strictEqual(row.encrypted, true);
+  assert.strictEqual(row.start_latency_ms, 212);
+  assert.strictEqual(row.dropped_frames, 50);
+  assert.strictEqual(row.frame_handoff_p95_ms, 3.1);
+  assert.strictEqual(row.failure_cause, null);
+  assert.ok(!('futureField' in row));
+
+  // A session that never reached its first frame reports -1 and a failure cause
+  const failed = normalizeSession({ ...session, startLatencyMs: -1, maxThermalStatus: -1, failureCause: 'startFailed:IOException' }, 42);
+  assert.strictEqual(failed.start_latency_ms, null);
+  assert.strictEqual(failed.max_thermal_status, null);
+  assert.strictEqual(failed.failure_cause, 'startFailed:IOException');
+
+  // Garbage numbers are dropped rather than failing the batch
+  const noisy = normalizeSession({ ...session, droppedFrames: 'lots', frameHandoffAvgMs: -3, durationMs: 1e15 }, 42);
+  assert.strictEqual(noisy.dropped_frames, 0);
+  assert.strictEqual(noisy.frame_handoff_avg_ms, null);
+  assert.strictEqual(noisy.duration_ms, 24 * 60 * 60 * 1000);
+
+  // Timings the device did not measure arrive as null and stay null
+  const unmeasured = normalizeSession({ ...session, frameHandoffAvgMs: null, frameHandoffP95Ms: null, sinkWriteAvgMs: null, sinkWriteP95Ms: null }, 42);
+  assert.strictEqual(unmeasured.frame_handoff_avg_ms, null);
+  assert.strictEqual(unmeasured.frame_handoff_p95_ms, null);
+  assert.strictEqual(unmeasured.sink_write_avg_ms, null);
+  assert.strictEqual(unmeasured.sink_write_p95_ms, null);
+
+  // Summaries without an id, model or start time can't be stored or grouped
+  assert.strictEqual(normalizeSession({ ...session, sessionId: '' }, 42), null);
+  assert.strictEqual(normalizeSession({ ...session, model: undefined }, 42), null);
+  assert.strictEqual(normalizeSession({ ...session, startedAt: 'yesterday' }, 42), null);
+  assert.strictEqual(normalizeSession(null, 42), null);
+
+  console.log('recordingTelemetry tests passed');
+})();
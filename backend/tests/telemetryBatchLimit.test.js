@@ -0,0 +1,87 @@
+const assert = require('assert');
+const express = require('express');
+
+const { applyBodyParsers } = require('../middleware/bodyParsers');
+const recordingTelemetry = require('../services/recordingTelemetryService');
+const { ingestRecordingSessions } = require('../controllers/telemetryController');
+
+// A full batch of failed sessions, as large as the recorder reports them
+const session = (i) => ({
+  schemaVersion: 1,
+  sessionId: `7d1f0c2e-5b4a-4c61-9a0e-${String(i).padStart(12, '0')}`,
+  startedAt: 1760000000000 + i,
+  model: 'SM-S918B Galaxy S23 Ultra (Android 14, One UI 6.1)',
+  manufacturer: 'samsung',
+  sdkInt: 34,
+  codec: 'c2.exynos.h264.encoder',
+  bitRate: 8000000,
+  encrypted: true,
+  streamed: true,
+  prewarmed: true,
+  startLatencyMs: 212,
+  durationMs: 600000,
+  bytesPerMinute: 60000000,
+  frames: 17950,
+  droppedFrames: 50,
+  frameHandoffAvgMs: 1.42,
+  frameHandoffP95Ms: 3.1,
+  sinkWriteAvgMs: 0.2,
+  sinkWriteP95Ms: 0.6,
+  thermalSteps: 2,
+  maxThermalStatus: 2,
+  failureCause: `recorderError: MediaRecorder error ${i}: ${'E'.repeat(200)}`,
+});
+
+const post = async (baseUrl, path, body) => {
+  const response = await fetch(`${baseUrl}${path}`, {
+    method: 'POST',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify(body),
+  });
+  return { status: response.status, body: await response.json().catch(() => null) };
+};
+
+(async () => {
+  recordingTelemetry.recordSessions = async (userId, sessions) => ({ accepted: sessions.length, duplicates: 0 });
+
+  // Same parser order as server.js, then the real controller
+  const app = express();
+  applyBodyParsers(app);
+  app.use((req, res, next) => {
+    req.user = { id: 42 };
+    next();
+  });
+  app.post('/api/telemetry/recording-sessions', ingestRecordingSessions);
+  app.post('/api/other', (req, res) => res.json({ ok: true }));
+  app.use((error, req, res, next) => res.status(error.status || 500).json({ message: error.message }));
+
+  const server = app.listen(0, '127.0.0.1');
+  await new Promise((resolve) => server.once('listening', resolve));
+  const baseUrl = `http://127.0.0.1:${server.address().port}`;
+
+  try {
+    const fullBatch = { sessions: Array.from({ length: recordingTelemetry.MAX_BATCH_SIZE }, (_, i) => session(i)) };
+    assert.ok(JSON.stringify(fullBatch).length > 10 * 1024);
+
+    const accepted = await post(baseUrl, '/api/telemetry/recording-sessions', fullBatch);
+    assert.strictEqual(accepted.status, 202);
+    assert.strictEqual(accepted.body.accepted, recordingTelemetry.MAX_BATCH_SIZE);
+
+    // One session over the batch size is refused by the controller, not the parser
+    fullBatch.sessions.push(session(recordingTelemetry.MAX_BATCH_SIZE));
+    const tooMany = await post(baseUrl, '/api/telemetry/recording-sessions', fullBatch);
+    assert.strictEqual(tooMany.status, 413);
+    assert.match(tooMany.body.message, /sessions per batch/);
+
+    // Everything else keeps the small default limit
+    const other = await post(baseUrl, '/api/other', { padding: 'x'.repeat(20 * 1024) });
+    assert.strictEqual(other.status, 413);
+
+    console.log('telemetryBatchLimit tests passed');
+  } finally {
+    server.close();
+  }
+})().catch((error) => {
+  console.error(error);
+  process.exit(1);
+});
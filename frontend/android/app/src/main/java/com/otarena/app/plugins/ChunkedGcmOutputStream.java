@@ -0,0 +1,135 @@
+package com.otarena.app.plugins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts a stream in fixed-size AES-GCM chunks as it is written.
+ *
+ * Layout: header ({@link #MAGIC}, version, chunk size, nonce prefix, wrapped data key),
+ * then chunks of {@code chunkSize + 16} bytes, the last one shorter. Each chunk is sealed
+ * with nonce = prefix || index and authenticates its index and whether it is the final
+ * chunk, so reordering and truncation are detected by {@link ChunkedGcmReader}.
+ */
+public class ChunkedGcmOutputStream extends OutputStream {
+
+    public static final byte[] MAGIC = { 'O', 'T', 'A', 'E' };
+    public static final int VERSION = 1;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    static final int TAG_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 4;
+    static final int NONCE_LENGTH = 12;
+
+    private final OutputStream sink;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+    private final byte[] buffer;
+    private final byte[] sealed;
+    private int buffered = 0;
+    private long chunkIndex = 0;
+    private boolean closed = false;
+
+    public ChunkedGcmOutputStream(OutputStream sink, SecretKey key, byte[] wrappedKey) throws IOException {
+        this(sink, key, wrappedKey, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedGcmOutputStream(OutputStream sink, SecretKey key, byte[] wrappedKey, int chunkSize) throws IOException {
+        this.sink = sink;
+        this.key = key;
+        this.buffer = new byte[chunkSize];
+        this.sealed = new byte[chunkSize + TAG_LENGTH];
+        new SecureRandom().nextBytes(noncePrefix);
+
+        try {
+            cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM unavailable", e);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength(wrappedKey.length));
+        header.put(MAGIC);
+        header.put((byte) VERSION);
+        header.putInt(chunkSize);
+        header.put(noncePrefix);
+        header.putShort((short) wrappedKey.length);
+        header.put(wrappedKey);
+        sink.write(header.array());
+    }
+
+    static int headerLength(int wrappedKeyLength) {
+        return MAGIC.length + 1 + 4 + NONCE_PREFIX_LENGTH + 2 + wrappedKeyLength;
+    }
+
+    static byte[] nonce(byte[] prefix, long index) {
+        return ByteBuffer.allocate(NONCE_LENGTH).put(prefix).putLong(index).array();
+    }
+
+    static byte[] aad(long index, boolean last) {
+        return ByteBuffer.allocate(9).putLong(index).put((byte) (last ? 1 : 0)).array();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - buffered);
+            System.arraycopy(b, off, buffer, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+
+            if (buffered == buffer.length) {
+                sealChunk(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes whole chunks only; a partial chunk stays buffered until it fills or the
+     * stream is closed, since every chunk but the last must be full-size.
+     */
+    @Override
+    public void flush() throws IOException {
+        sink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        try {
+            sealChunk(true);
+            sink.flush();
+        } finally {
+            closed = true;
+            sink.close();
+        }
+    }
+
+    private void sealChunk(boolean last) throws IOException {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce(noncePrefix, chunkIndex)));
+            cipher.updateAAD(aad(chunkIndex, last));
+            int length = cipher.doFinal(buffer, 0, buffered, sealed, 0);
+            sink.write(sealed, 0, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to encrypt chunk " + chunkIndex, e);
+        }
+        chunkIndex++;
+        buffered = 0;
+    }
+}
@@ -0,0 +1,169 @@
+package com.otarena.app.plugins;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Random-access reader for files written by {@link ChunkedGcmOutputStream}.
+ *
+ * Chunks are fixed-size, so any plaintext position maps straight to one chunk; only the
+ * chunks covering a read are decrypted. The most recent chunk is cached, which keeps
+ * sequential reads and MediaExtractor's small probing reads cheap.
+ */
+public class ChunkedGcmReader implements Closeable {
+
+    public interface KeyUnwrapper {
+        SecretKey unwrap(byte[] wrappedKey) throws GeneralSecurityException;
+    }
+
+    private final RandomAccessFile file;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final int chunkSize;
+    private final byte[] noncePrefix = new byte[ChunkedGcmOutputStream.NONCE_PREFIX_LENGTH];
+    private final long dataOffset;
+    private final long chunkCount;
+    private final long plaintextLength;
+
+    private final byte[] sealed;
+    private final byte[] chunk;
+    private long cachedChunk = -1;
+    private int cachedLength = 0;
+
+    public ChunkedGcmReader(File source, KeyUnwrapper unwrapper) throws IOException {
+        file = new RandomAccessFile(source, "r");
+        try {
+            byte[] magic = new byte[ChunkedGcmOutputStream.MAGIC.length];
+            file.readFully(magic);
+            if (!Arrays.equals(magic, ChunkedGcmOutputStream.MAGIC)) {
+                throw new IOException("Not an encrypted recording: " + source.getName());
+            }
+            int version = file.readUnsignedByte();
+            if (version != ChunkedGcmOutputStream.VERSION) {
+                throw new IOException("Unsupported encrypted recording version " + version);
+            }
+            chunkSize = file.readInt();
+            file.readFully(noncePrefix);
+            byte[] wrappedKey = new byte[file.readUnsignedShort()];
+            file.readFully(wrappedKey);
+
+            dataOffset = ChunkedGcmOutputStream.headerLength(wrappedKey.length);
+            long sealedChunkSize = chunkSize + ChunkedGcmOutputStream.TAG_LENGTH;
+            long dataLength = file.length() - dataOffset;
+            chunkCount = (dataLength + sealedChunkSize - 1) / sealedChunkSize;
+            long lastSealed = dataLength - (chunkCount - 1) * sealedChunkSize;
+            if (chunkCount == 0 || lastSealed < ChunkedGcmOutputStream.TAG_LENGTH) {
+                throw new IOException("Encrypted recording is truncated");
+            }
+            plaintextLength = (chunkCount - 1) * chunkSize + lastSealed - ChunkedGcmOutputStream.TAG_LENGTH;
+
+            key = unwrapper.unwrap(wrappedKey);
+            cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException e) {
+            file.close();
+            throw new IOException("Cannot open encrypted recording", e);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+
+        sealed = new byte[chunkSize + ChunkedGcmOutputStream.TAG_LENGTH];
+        chunk = new byte[chunkSize];
+    }
+
+    public long length() {
+        return plaintextLength;
+    }
+
+    /**
+     * Reads up to {@code len} plaintext bytes at {@code position}. Returns -1 at end of data.
+     */
+    public synchronized int read(long position, byte[] b, int off, int len) throws IOException {
+        if (position >= plaintextLength) return -1;
+
+        int total = 0;
+        while (len > 0 && position < plaintextLength) {
+            long index = position / chunkSize;
+            int inChunk = (int) (position % chunkSize);
+            loadChunk(index);
+
+            int n = Math.min(len, cachedLength - inChunk);
+            System.arraycopy(chunk, inChunk, b, off, n);
+            total += n;
+            position += n;
+            off += n;
+            len -= n;
+        }
+        return total;
+    }
+
+    public InputStream openStream() {
+        return new InputStream() {
+            private long position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = ChunkedGcmReader.this.read(position, b, off, len);
+                if (n > 0) position += n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                long skipped = Math.max(0, Math.min(n, plaintextLength - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, plaintextLength - position);
+            }
+        };
+    }
+
+    private void loadChunk(long index) throws IOException {
+        if (index == cachedChunk) return;
+
+        boolean last = index == chunkCount - 1;
+        long sealedChunkSize = chunkSize + ChunkedGcmOutputStream.TAG_LENGTH;
+        int sealedLength = last
+                ? (int) (file.length() - dataOffset - index * sealedChunkSize)
+                : (int) sealedChunkSize;
+
+        file.seek(dataOffset + index * sealedChunkSize);
+        file.readFully(sealed, 0, sealedLength);
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(
+                    ChunkedGcmOutputStream.TAG_LENGTH * 8, ChunkedGcmOutputStream.nonce(noncePrefix, index)));
+            cipher.updateAAD(ChunkedGcmOutputStream.aad(index, last));
+            cachedLength = cipher.doFinal(sealed, 0, sealedLength, chunk, 0);
+            cachedChunk = index;
+        } catch (GeneralSecurityException e) {
+            cachedChunk = -1;
+            throw new IOException("Chunk " + index + " failed authentication", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.otarena.app.plugins;
+
+import android.media.MediaDataSource;
+
+import java.io.IOException;
+
+/**
+ * Exposes an encrypted recording to MediaExtractor / MediaMetadataRetriever without
+ * writing the plaintext to disk.
+ */
+public class DecryptingMediaDataSource extends MediaDataSource {
+
+    private final ChunkedGcmReader reader;
+
+    public DecryptingMediaDataSource(ChunkedGcmReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size == 0) return 0;
+        return reader.read(position, buffer, offset, size);
+    }
+
+    @Override
+    public long getSize() {
+        return reader.length();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,34 @@
+package com.otarena.app.plugins;
+
+import com.otarena.app.recording.RecordingFiles;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Naming helpers for recordings written in encrypted mode. Their plaintext is MPEG-2 TS
+ * (MP4 can't be written through a pipe), so they are stored as "<name>.ts.enc".
+ */
+public class EncryptedRecordings {
+
+    private EncryptedRecordings() {}
+
+    public static String encryptedNameFor(String fileName) {
+        String base = fileName.endsWith(RecordingFiles.MP4_SUFFIX)
+                ? fileName.substring(0, fileName.length() - RecordingFiles.MP4_SUFFIX.length())
+                : fileName;
+        return base + RecordingFiles.ENCRYPTED_SUFFIX;
+    }
+
+    /**
+     * Name of the decrypted copy, e.g. for export: "<name>.ts".
+     */
+    public static String plaintextNameFor(File file) {
+        String name = file.getName();
+        return name.substring(0, name.length() - ".enc".length());
+    }
+
+    public static ChunkedGcmReader openReader(File file) throws IOException {
+        return new ChunkedGcmReader(file, RecordingKeys::unwrap);
+    }
+}
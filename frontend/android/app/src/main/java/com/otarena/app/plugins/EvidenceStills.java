@@ -0,0 +1,57 @@
+package com.otarena.app.plugins;
+
+import android.graphics.Bitmap;
+
+import com.otarena.app.recording.RecordingFiles;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Frames flagged by a {@link FrameAnalyzer}, saved as JPEGs in "<name>.mp4_evidence/"
+ * next to the recording.
+ */
+public class EvidenceStills {
+
+    private static final int JPEG_QUALITY = 85;
+
+    private EvidenceStills() {}
+
+    public static File dirFor(File recording) {
+        return RecordingFiles.evidenceDirFor(recording);
+    }
+
+    public static File save(File recording, SampledFrame frame, String label) throws IOException {
+        File dir = dirFor(recording);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        String safeLabel = label.replaceAll("[^a-zA-Z0-9]", "_");
+        File still = new File(dir, safeLabel + "_" + frame.getOffsetMs() + ".jpg");
+
+        Bitmap bitmap = Bitmap.createBitmap(frame.getArgb(), frame.getWidth(), frame.getHeight(), Bitmap.Config.ARGB_8888);
+        try (FileOutputStream fos = new FileOutputStream(still)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, fos);
+        } finally {
+            bitmap.recycle();
+        }
+        return still;
+    }
+
+    public static List<String> list(File recording) {
+        List<String> paths = new ArrayList<>();
+        File[] stills = dirFor(recording).listFiles((dir, name) -> name.endsWith(".jpg"));
+        if (stills != null) {
+            Arrays.sort(stills);
+            for (File still : stills) {
+                paths.add(still.getAbsolutePath());
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,16 @@
+package com.otarena.app.plugins;
+
+/**
+ * Inspects frames sampled during capture. Implementations run on a background thread and
+ * only see frames while the previous one has been handled, so they may be slow but must
+ * not block on the UI.
+ */
+public interface FrameAnalyzer {
+
+    /**
+     * Short name used for evidence stills and markers, e.g. "score screen".
+     */
+    String getLabel();
+
+    boolean matches(SampledFrame frame);
+}
@@ -0,0 +1,428 @@
+package com.otarena.app.plugins;
+
+import android.graphics.SurfaceTexture;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import com.otarena.app.recording.SessionTelemetry;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sits between the VirtualDisplay and the encoder when frame sampling is enabled.
+ *
+ * The display renders into a SurfaceTexture; every frame is drawn straight through to the
+ * encoder surface, and at most once per sample interval the same texture is also drawn into
+ * a small offscreen buffer that is read back for the analyzer. A single VirtualDisplay is
+ * used because Android 14+ only allows one per MediaProjection.
+ *
+ * Analysis runs on its own low-priority thread. While it is busy, samples are skipped rather
+ * than queued so the encoder path never waits on an analyzer.
+ */
+public class FrameSplitter implements SurfaceTexture.OnFrameAvailableListener {
+
+    private static final String TAG = "FrameSplitter";
+    private static final int EGL_RECORDABLE_ANDROID = 0x3142;
+
+    private static final String VERTEX_SHADER =
+            "uniform mat4 uTexMatrix;\n" +
+            "attribute vec4 aPosition;\n" +
+            "attribute vec4 aTexCoord;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "void main() {\n" +
+            "    gl_Position = aPosition;\n" +
+            "    vTexCoord = (uTexMatrix * aTexCoord).xy;\n" +
+            "}\n";
+
+    private static final String FRAGMENT_SHADER =
+            "#extension GL_OES_EGL_image_external : require\n" +
+            "precision mediump float;\n" +
+            "varying vec2 vTexCoord;\n" +
+            "uniform samplerExternalOES sTexture;\n" +
+            "void main() {\n" +
+            "    gl_FragColor = texture2D(sTexture, vTexCoord);\n" +
+            "}\n";
+
+    private static final float[] QUAD_POSITIONS = { -1f, -1f, 1f, -1f, -1f, 1f, 1f, 1f };
+    private static final float[] QUAD_TEX_COORDS = { 0f, 0f, 1f, 0f, 0f, 1f, 1f, 1f };
+
+    public interface SampleListener {
+        /**
+         * Called on the analysis thread.
+         */
+        void onSample(SampledFrame frame);
+    }
+
+    private final Surface encoderSurface;
+    private final int width;
+    private final int height;
+    private final int sampleWidth;
+    private final int sampleHeight;
+    private final long sampleIntervalMs;
+    private final SampleListener listener;
+
+    private HandlerThread glThread;
+    private Handler glHandler;
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "FrameAnalysis");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean analysisBusy = new AtomicBoolean(false);
+
+    private EGLDisplay eglDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLContext eglContext = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface encoderEglSurface = EGL14.EGL_NO_SURFACE;
+    private SurfaceTexture inputTexture;
+    private Surface inputSurface;
+    private int program;
+    private int oesTextureId;
+    private int sampleFramebuffer;
+    private int sampleTextureId;
+    private ByteBuffer sampleBuffer;
+    private FloatBuffer positions;
+    private FloatBuffer texCoords;
+    private final float[] texMatrix = new float[16];
+
+    private long startRealtime;
+    private long lastSampleRealtime;
+    private boolean released = false;
+    private volatile Runnable firstFrameListener;
+    private volatile SessionTelemetry telemetry;
+
+    public FrameSplitter(Surface encoderSurface, int width, int height,
+                         int sampleWidth, int sampleHeight, long sampleIntervalMs,
+                         SampleListener listener) {
+        this.encoderSurface = encoderSurface;
+        this.width = width;
+        this.height = height;
+        this.sampleWidth = sampleWidth;
+        this.sampleHeight = sampleHeight;
+        this.sampleIntervalMs = sampleIntervalMs;
+        this.listener = listener;
+    }
+
+    /**
+     * Sets up the GL pipeline and returns the surface the VirtualDisplay should render into.
+     */
+    public Surface start() throws Exception {
+        glThread = new HandlerThread("FrameSplitter", Process.THREAD_PRIORITY_DISPLAY);
+        glThread.start();
+        glHandler = new Handler(glThread.getLooper());
+
+        CountDownLatch ready = new CountDownLatch(1);
+        Exception[] failure = new Exception[1];
+        glHandler.post(() -> {
+            try {
+                setUpGl();
+            } catch (Exception e) {
+                failure[0] = e;
+            }
+            ready.countDown();
+        });
+        ready.await();
+
+        if (failure[0] != null) {
+            release();
+            throw failure[0];
+        }
+
+        startRealtime = SystemClock.elapsedRealtime();
+        lastSampleRealtime = startRealtime;
+        return inputSurface;
+    }
+
+    /**
+     * Runs once on the GL thread after the first frame has been handed to the encoder.
+     */
+    public void setFirstFrameListener(Runnable listener) {
+        firstFrameListener = listener;
+    }
+
+    /**
+     * Receives every frame's timestamp and how long handing it to the encoder took.
+     */
+    public void setTelemetry(SessionTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    public void release() {
+        if (glThread == null) return;
+
+        CountDownLatch done = new CountDownLatch(1);
+        glHandler.post(() -> {
+            tearDownGl();
+            done.countDown();
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        glThread.quitSafely();
+        glThread = null;
+        analysisExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        if (released) return;
+
+        try {
+            inputTexture.updateTexImage();
+            inputTexture.getTransformMatrix(texMatrix);
+
+            // Swapping blocks while the encoder has no free input buffer
+            long handoffStart = System.nanoTime();
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+            GLES20.glViewport(0, 0, width, height);
+            drawFrame();
+            EGLExt.eglPresentationTimeANDROID(eglDisplay, encoderEglSurface, inputTexture.getTimestamp());
+            EGL14.eglSwapBuffers(eglDisplay, encoderEglSurface);
+            SessionTelemetry session = telemetry;
+            if (session != null) {
+                session.onFrame(inputTexture.getTimestamp(), System.nanoTime() - handoffStart);
+            }
+
+            Runnable onFirstFrame = firstFrameListener;
+            if (onFirstFrame != null) {
+                firstFrameListener = null;
+                onFirstFrame.run();
+            }
+
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastSampleRealtime >= sampleIntervalMs && !analysisBusy.get()) {
+                lastSampleRealtime = now;
+                captureSample(now - startRealtime);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error forwarding frame", e);
+        }
+    }
+
+    private void captureSample(long offsetMs) {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, sampleFramebuffer);
+        GLES20.glViewport(0, 0, sampleWidth, sampleHeight);
+        drawFrame();
+        sampleBuffer.rewind();
+        GLES20.glReadPixels(0, 0, sampleWidth, sampleHeight, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, sampleBuffer);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        byte[] rgba = new byte[sampleBuffer.capacity()];
+        sampleBuffer.rewind();
+        sampleBuffer.get(rgba);
+
+        analysisBusy.set(true);
+        analysisExecutor.execute(() -> {
+            try {
+                listener.onSample(toFrame(rgba, offsetMs));
+            } catch (Exception e) {
+                Log.e(TAG, "Error analyzing sample", e);
+            } finally {
+                analysisBusy.set(false);
+            }
+        });
+    }
+
+    private SampledFrame toFrame(byte[] rgba, long offsetMs) {
+        // glReadPixels returns the bottom row first
+        int[] argb = new int[sampleWidth * sampleHeight];
+        for (int y = 0; y < sampleHeight; y++) {
+            int src = (sampleHeight - 1 - y) * sampleWidth * 4;
+            int dst = y * sampleWidth;
+            for (int x = 0; x < sampleWidth; x++, src += 4) {
+                argb[dst + x] = 0xff000000
+                        | (rgba[src] & 0xff) << 16
+                        | (rgba[src + 1] & 0xff) << 8
+                        | (rgba[src + 2] & 0xff);
+            }
+        }
+        return new SampledFrame(sampleWidth, sampleHeight, argb, offsetMs);
+    }
+
+    private void drawFrame() {
+        GLES20.glUseProgram(program);
+
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, oesTextureId);
+
+        int positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
+        int texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
+        GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(program, "uTexMatrix"), 1, false, texMatrix, 0);
+
+        GLES20.glEnableVertexAttribArray(positionHandle);
+        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, positions);
+        GLES20.glEnableVertexAttribArray(texCoordHandle);
+        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texCoords);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+        GLES20.glDisableVertexAttribArray(positionHandle);
+        GLES20.glDisableVertexAttribArray(texCoordHandle);
+    }
+
+    private void setUpGl() {
+        eglDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (!EGL14.eglInitialize(eglDisplay, version, 0, version, 1)) {
+            throw new IllegalStateException("eglInitialize failed");
+        }
+
+        int[] configAttribs = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                EGL_RECORDABLE_ANDROID, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(eglDisplay, configAttribs, 0, configs, 0, 1, numConfigs, 0) || numConfigs[0] == 0) {
+            throw new IllegalStateException("No recordable EGL config");
+        }
+
+        int[] contextAttribs = { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE };
+        eglContext = EGL14.eglCreateContext(eglDisplay, configs[0], EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+        encoderEglSurface = EGL14.eglCreateWindowSurface(eglDisplay, configs[0], encoderSurface, new int[] { EGL14.EGL_NONE }, 0);
+        if (eglContext == EGL14.EGL_NO_CONTEXT || encoderEglSurface == EGL14.EGL_NO_SURFACE) {
+            throw new IllegalStateException("EGL setup failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        }
+        EGL14.eglMakeCurrent(eglDisplay, encoderEglSurface, encoderEglSurface, eglContext);
+
+        program = createProgram();
+        positions = asFloatBuffer(QUAD_POSITIONS);
+        texCoords = asFloatBuffer(QUAD_TEX_COORDS);
+
+        int[] ids = new int[1];
+        GLES20.glGenTextures(1, ids, 0);
+        oesTextureId = ids[0];
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, oesTextureId);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+
+        GLES20.glGenTextures(1, ids, 0);
+        sampleTextureId = ids[0];
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, sampleTextureId);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, sampleWidth, sampleHeight, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+
+        GLES20.glGenFramebuffers(1, ids, 0);
+        sampleFramebuffer = ids[0];
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, sampleFramebuffer);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, sampleTextureId, 0);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+
+        sampleBuffer = ByteBuffer.allocateDirect(sampleWidth * sampleHeight * 4).order(ByteOrder.nativeOrder());
+
+        inputTexture = new SurfaceTexture(oesTextureId);
+        inputTexture.setDefaultBufferSize(width, height);
+        inputTexture.setOnFrameAvailableListener(this, glHandler);
+        inputSurface = new Surface(inputTexture);
+    }
+
+    private void tearDownGl() {
+        released = true;
+
+        if (inputSurface != null) {
+            inputSurface.release();
+            inputSurface = null;
+        }
+        if (inputTexture != null) {
+            inputTexture.release();
+            inputTexture = null;
+        }
+        if (eglDisplay != EGL14.EGL_NO_DISPLAY) {
+            if (program != 0) {
+                GLES20.glDeleteProgram(program);
+                GLES20.glDeleteTextures(2, new int[] { oesTextureId, sampleTextureId }, 0);
+                GLES20.glDeleteFramebuffers(1, new int[] { sampleFramebuffer }, 0);
+            }
+            EGL14.eglMakeCurrent(eglDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            if (encoderEglSurface != EGL14.EGL_NO_SURFACE) {
+                EGL14.eglDestroySurface(eglDisplay, encoderEglSurface);
+            }
+            if (eglContext != EGL14.EGL_NO_CONTEXT) {
+                EGL14.eglDestroyContext(eglDisplay, eglContext);
+            }
+            EGL14.eglReleaseThread();
+            EGL14.eglTerminate(eglDisplay);
+        }
+        eglDisplay = EGL14.EGL_NO_DISPLAY;
+        eglContext = EGL14.EGL_NO_CONTEXT;
+        encoderEglSurface = EGL14.EGL_NO_SURFACE;
+    }
+
+    private static int createProgram() {
+        int vertexShader = compileShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = compileShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new IllegalStateException("Could not link program: " + log);
+        }
+
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new IllegalStateException("Could not compile shader: " + log);
+        }
+        return shader;
+    }
+
+    private static FloatBuffer asFloatBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffer.put(values).position(0);
+        return buffer;
+    }
+}
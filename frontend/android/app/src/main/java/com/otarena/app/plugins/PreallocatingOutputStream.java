@@ -0,0 +1,95 @@
+package com.otarena.app.plugins;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.util.Log;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a file sequentially while reserving space for it ahead of the writes in large
+ * extents, so a long recording gets a few big allocations instead of thousands of small
+ * ones that fragment the file and stall the writer. The file is trimmed to what was
+ * actually written on close.
+ *
+ * Preallocation is best effort: if the filesystem doesn't support it, or the volume can't
+ * fit another extent, writes simply continue without it.
+ */
+public class PreallocatingOutputStream extends OutputStream {
+
+    private static final String TAG = "PreallocatingOutput";
+
+    public static final long DEFAULT_EXTENT_BYTES = 32L * 1024 * 1024;
+
+    private final FileOutputStream out;
+    private final FileDescriptor fd;
+    private final long extentBytes;
+    private final long limitBytes;
+    private long position = 0;
+    private long allocated = 0;
+    private boolean preallocating = true;
+    private boolean closed = false;
+
+    /**
+     * @param limitBytes space is never reserved past this size; writes past it still succeed
+     */
+    public PreallocatingOutputStream(FileOutputStream out, long extentBytes, long limitBytes) throws IOException {
+        this.out = out;
+        this.fd = out.getFD();
+        this.extentBytes = extentBytes;
+        this.limitBytes = limitBytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        reserve(position + len);
+        out.write(b, off, len);
+        position += len;
+    }
+
+    private void reserve(long needed) {
+        if (!preallocating || needed <= allocated || needed > limitBytes) return;
+
+        long target = Math.max(needed, Math.min(allocated + extentBytes, limitBytes));
+        try {
+            Os.posix_fallocate(fd, allocated, target - allocated);
+            allocated = target;
+        } catch (ErrnoException e) {
+            Log.w(TAG, "Preallocation unavailable, continuing without it", e);
+            preallocating = false;
+        }
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            if (allocated > position) {
+                Os.ftruncate(fd, position);
+            }
+        } catch (ErrnoException e) {
+            throw new IOException("Could not trim preallocated space", e);
+        } finally {
+            out.close();
+        }
+    }
+}
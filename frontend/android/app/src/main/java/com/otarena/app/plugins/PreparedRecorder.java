@@ -0,0 +1,165 @@
+package com.otarena.app.plugins;
+
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.StatFs;
+import android.util.Log;
+
+import com.otarena.app.recording.RecordingFiles;
+import com.otarena.app.recording.StorageBudget;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.crypto.SecretKey;
+
+/**
+ * A MediaRecorder that has been configured and prepared, together with its output.
+ *
+ * Nothing here needs the MediaProjection, so it can be built ahead of time by
+ * {@link RecordingPrewarm} while the capture permission dialog is showing and handed to
+ * the service once permission is granted.
+ */
+public class PreparedRecorder {
+
+    private static final String TAG = "PreparedRecorder";
+
+    public static final int VIDEO_WIDTH = 1280;
+    public static final int VIDEO_HEIGHT = 720;
+    public static final int VIDEO_BIT_RATE = 8 * 1000 * 1000;
+    public static final int VIDEO_FRAME_RATE = 30;
+
+    final String requestedName;
+    final boolean encryptRequested;
+    final boolean streamRequested;
+    final MediaRecorder recorder;
+    final File outputFile;
+    final RecordingPipe pipe;
+    final StorageBudget budget;
+
+    private PreparedRecorder(String requestedName, boolean encryptRequested, boolean streamRequested,
+                             MediaRecorder recorder, File outputFile, RecordingPipe pipe, StorageBudget budget) {
+        this.requestedName = requestedName;
+        this.encryptRequested = encryptRequested;
+        this.streamRequested = streamRequested;
+        this.recorder = recorder;
+        this.outputFile = outputFile;
+        this.pipe = pipe;
+        this.budget = budget;
+    }
+
+    /**
+     * Sizes a recording at the default bitrate against the free space on the recordings volume.
+     */
+    public static StorageBudget budgetFor(File recordsDir) {
+        if (!recordsDir.exists()) {
+            recordsDir.mkdirs();
+        }
+        long availableBytes = new StatFs(recordsDir.getAbsolutePath()).getAvailableBytes();
+        return StorageBudget.forAvailableBytes(availableBytes, VIDEO_BIT_RATE);
+    }
+
+    /**
+     * Throws if there isn't enough free space to record for at least
+     * {@link StorageBudget#MIN_DURATION_MS} at the minimum bitrate.
+     */
+    public static StorageBudget requireBudget(File recordsDir) throws IOException {
+        StorageBudget budget = budgetFor(recordsDir);
+        if (!budget.isSufficient()) {
+            throw new IOException("Not enough free storage to record ("
+                    + budget.getAvailableBytes() / (1024 * 1024) + " MB available)");
+        }
+        return budget;
+    }
+
+    /**
+     * @param stream route the output through a pipe so it can be tapped for live streaming
+     */
+    public static PreparedRecorder prepare(File recordsDir, String fileName, boolean encrypt, boolean stream) throws Exception {
+        // Encrypted and streamed output go through a pipe, which MP4 can't be written to
+        boolean tsSupported = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+        boolean encrypted = encrypt && tsSupported;
+        boolean piped = (encrypt || stream) && tsSupported;
+        if ((encrypt || stream) && !tsSupported) {
+            Log.w(TAG, "Encrypted and streamed recording require Android 8.0+, recording a plain MP4");
+        }
+
+        StorageBudget budget = requireBudget(recordsDir);
+
+        // Configure MediaRecorder
+        MediaRecorder recorder = new MediaRecorder();
+        RecordingPipe pipe = null;
+        try {
+            // Optional: Add Audio if you want sound
+            // recorder.setAudioSource(MediaRecorder.AudioSource.MIC);
+            recorder.setVideoSource(MediaRecorder.VideoSource.SURFACE);
+            recorder.setOutputFormat(piped
+                    ? MediaRecorder.OutputFormat.MPEG_2_TS
+                    : MediaRecorder.OutputFormat.MPEG_4);
+            recorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
+            recorder.setVideoEncodingBitRate(budget.getBitRate());
+            recorder.setVideoFrameRate(VIDEO_FRAME_RATE);
+
+            // Use screen dimensions or fixed size
+            recorder.setVideoSize(VIDEO_WIDTH, VIDEO_HEIGHT);
+
+            // The recorder finalizes the file and reports MAX_FILESIZE_REACHED at this size.
+            // Encrypted output carries a 16 byte tag per 64 KiB chunk on top of what it counts.
+            long maxFileBytes = budget.getMaxFileBytes();
+            recorder.setMaxFileSize(encrypted ? maxFileBytes - maxFileBytes / 4096 : maxFileBytes);
+
+            String outputName = encrypted ? EncryptedRecordings.encryptedNameFor(fileName)
+                    : piped ? RecordingFiles.tsNameFor(fileName)
+                    : fileName;
+            File outputFile = new File(recordsDir, outputName);
+
+            if (piped) {
+                // MP4 output is written by the platform, which preallocates it itself (Android 11+)
+                PreallocatingOutputStream sink = new PreallocatingOutputStream(new FileOutputStream(outputFile),
+                        PreallocatingOutputStream.DEFAULT_EXTENT_BYTES, maxFileBytes);
+                if (encrypted) {
+                    SecretKey dataKey = RecordingKeys.newDataKey();
+                    pipe = new RecordingPipe(new ChunkedGcmOutputStream(sink, dataKey, RecordingKeys.wrap(dataKey)));
+                } else {
+                    pipe = new RecordingPipe(sink);
+                }
+                recorder.setOutputFile(pipe.start());
+            } else {
+                recorder.setOutputFile(outputFile.getAbsolutePath());
+            }
+            recorder.prepare();
+            if (pipe != null) {
+                pipe.closeWriteSide();
+            }
+
+            return new PreparedRecorder(fileName, encrypt, stream, recorder, outputFile, pipe, budget);
+        } catch (Exception e) {
+            recorder.release();
+            if (pipe != null) {
+                pipe.closeWriteSide();
+            }
+            throw e;
+        }
+    }
+
+    boolean matches(String fileName, boolean encrypt, boolean stream) {
+        return requestedName.equals(fileName) && encryptRequested == encrypt && streamRequested == stream;
+    }
+
+    /**
+     * Releases a recorder that will not be started, removing its empty output.
+     */
+    void discard() {
+        recorder.release();
+        if (pipe != null) {
+            try {
+                pipe.awaitFinished(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Nothing was recorded into it
+        outputFile.delete();
+    }
+}
@@ -0,0 +1,76 @@
+package com.otarena.app.plugins;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Envelope keys for encrypted recordings.
+ *
+ * Every recording gets its own random AES-256 data key, used in-process by the chunk
+ * cipher. The data key is stored in the file header wrapped by a key that never leaves
+ * Android Keystore, so Keystore is only called once per file rather than once per chunk.
+ */
+public class RecordingKeys {
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String WRAPPING_KEY_ALIAS = "otarena_recordings_kek";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private RecordingKeys() {}
+
+    public static SecretKey newDataKey() throws GeneralSecurityException {
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES);
+        generator.init(256);
+        return generator.generateKey();
+    }
+
+    public static byte[] wrap(SecretKey dataKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, getOrCreateWrappingKey());
+        byte[] iv = cipher.getIV();
+        byte[] wrapped = cipher.doFinal(dataKey.getEncoded());
+
+        return ByteBuffer.allocate(iv.length + wrapped.length).put(iv).put(wrapped).array();
+    }
+
+    public static SecretKey unwrap(byte[] wrappedKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, getOrCreateWrappingKey(),
+                new GCMParameterSpec(GCM_TAG_BITS, wrappedKey, 0, GCM_IV_LENGTH));
+        byte[] raw = cipher.doFinal(wrappedKey, GCM_IV_LENGTH, wrappedKey.length - GCM_IV_LENGTH);
+        return new SecretKeySpec(raw, KeyProperties.KEY_ALGORITHM_AES);
+    }
+
+    private static synchronized SecretKey getOrCreateWrappingKey() throws GeneralSecurityException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+            keyStore.load(null);
+            if (keyStore.containsAlias(WRAPPING_KEY_ALIAS)) {
+                return (SecretKey) keyStore.getKey(WRAPPING_KEY_ALIAS, null);
+            }
+        } catch (java.io.IOException e) {
+            throw new GeneralSecurityException("Cannot open Android Keystore", e);
+        }
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(
+                WRAPPING_KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+}
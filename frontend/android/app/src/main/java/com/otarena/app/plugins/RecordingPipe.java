@@ -0,0 +1,173 @@
+package com.otarena.app.plugins;
+
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import com.otarena.app.recording.SessionTelemetry;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Lets MediaRecorder write into a pipe instead of a file so its output can be processed
+ * as it is produced. A dedicated thread drains the pipe into the sink; if the sink fails
+ * the pipe keeps being drained so the encoder is never blocked on a full pipe.
+ *
+ * MP4 needs a seekable output, so recorders writing here must use a streamable container
+ * such as MPEG-2 TS.
+ *
+ * An optional tap receives a copy of the plaintext output after the sink, e.g. for live
+ * streaming. A failing tap is dropped without affecting the sink.
+ */
+public class RecordingPipe {
+
+    private static final String TAG = "RecordingPipe";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream sink;
+    private volatile OutputStream tap;
+    private volatile SessionTelemetry telemetry;
+    private ParcelFileDescriptor readSide;
+    private ParcelFileDescriptor writeSide;
+    private Thread pumpThread;
+
+    private volatile long bytesWritten = 0;
+    private volatile long sinkNanos = 0;
+    private volatile IOException sinkError;
+
+    public RecordingPipe(OutputStream sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Sets the stream that gets a copy of the output. Must be set before the recorder starts;
+     * it is closed together with the sink.
+     */
+    public void setTap(OutputStream tap) {
+        this.tap = tap;
+    }
+
+    /**
+     * Receives the duration of every sink write.
+     */
+    public void setTelemetry(SessionTelemetry telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /**
+     * Creates the pipe and starts draining it. The returned descriptor is for
+     * MediaRecorder.setOutputFile(); call {@link #closeWriteSide()} once the recorder is prepared.
+     */
+    public FileDescriptor start() throws IOException {
+        ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+        readSide = pipe[0];
+        writeSide = pipe[1];
+
+        pumpThread = new Thread(this::pump, "RecordingPipe");
+        pumpThread.start();
+        return writeSide.getFileDescriptor();
+    }
+
+    /**
+     * MediaRecorder keeps its own duplicate of the descriptor, so ours can be closed after
+     * prepare(). The pipe then reaches end-of-stream when the recorder is released.
+     */
+    public void closeWriteSide() {
+        if (writeSide == null) return;
+        try {
+            writeSide.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing pipe write side", e);
+        }
+        writeSide = null;
+    }
+
+    /**
+     * Waits for the pump to drain the pipe and close the sink.
+     */
+    public boolean awaitFinished(long timeoutMs) throws InterruptedException {
+        closeWriteSide();
+        if (pumpThread == null) return true;
+        pumpThread.join(timeoutMs);
+        return !pumpThread.isAlive();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Time spent inside the sink (cipher and disk writes), for throughput reporting.
+     */
+    public long getSinkNanos() {
+        return sinkNanos;
+    }
+
+    public IOException getSinkError() {
+        return sinkError;
+    }
+
+    private void pump() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        try (InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(readSide)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                if (sinkError != null) continue;
+                try {
+                    long start = System.nanoTime();
+                    sink.write(buffer, 0, n);
+                    long elapsed = System.nanoTime() - start;
+                    sinkNanos += elapsed;
+                    SessionTelemetry session = telemetry;
+                    if (session != null) session.onSinkWrite(elapsed);
+                    bytesWritten += n;
+                } catch (IOException e) {
+                    Log.e(TAG, "Sink failed, discarding remaining output", e);
+                    sinkError = e;
+                }
+                writeTap(buffer, n);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading recorder output", e);
+        } finally {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing sink", e);
+                if (sinkError == null) sinkError = e;
+            }
+            closeTap();
+        }
+    }
+
+    private void writeTap(byte[] buffer, int n) {
+        OutputStream out = tap;
+        if (out == null) return;
+        try {
+            out.write(buffer, 0, n);
+        } catch (IOException e) {
+            Log.e(TAG, "Tap failed, dropping it", e);
+            tap = null;
+            closeQuietly(out);
+        }
+    }
+
+    private void closeTap() {
+        OutputStream out = tap;
+        tap = null;
+        if (out != null) closeQuietly(out);
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing tap", e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.otarena.app.plugins;
+
+import android.content.Context;
+import android.media.MediaCodecList;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Does the permission-independent part of starting a recording while the screen capture
+ * dialog is still showing: creates the recordings directory and notification channel,
+ * loads the codec list, and configures and prepares the MediaRecorder with its output
+ * file. The service picks the result up through {@link #take} instead of doing that work
+ * after permission is granted.
+ *
+ * Everything runs on one thread, so a prewarm that turns out not to be usable is released,
+ * and its output file removed, before a replacement for the same file is prepared.
+ */
+public class RecordingPrewarm {
+
+    private static final String TAG = "RecordingPrewarm";
+
+    public interface Callback {
+        /**
+         * Called on the prewarm thread with the recorder, or with the error that kept one from
+         * being prepared.
+         */
+        void onPrepared(PreparedRecorder prepared, boolean prewarmed, Exception error);
+    }
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RecordingPrewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static Future<PreparedRecorder> pending;
+    // Written on the prewarm thread, read on the service thread
+    private static volatile long prewarmMs = -1;
+
+    private RecordingPrewarm() {}
+
+    public static synchronized void start(Context context, File recordsDir, String fileName,
+                                          boolean encrypt, boolean stream) {
+        discard();
+
+        final Context appContext = context.getApplicationContext();
+        pending = executor.submit(() -> {
+            long start = SystemClock.elapsedRealtime();
+            Trace.beginSection("OTArena:prewarm");
+            try {
+                ScreenRecordService.createNotificationChannel(appContext);
+                // First access parses the platform codec list; keep that off the critical path
+                new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos();
+                return PreparedRecorder.prepare(recordsDir, fileName, encrypt, stream);
+            } finally {
+                Trace.endSection();
+                prewarmMs = SystemClock.elapsedRealtime() - start;
+            }
+        });
+    }
+
+    /**
+     * Hands {@code callback} the prewarmed recorder if one was built for this file and options,
+     * otherwise prepares one on the prewarm thread. Never blocks the caller.
+     */
+    public static synchronized void take(File recordsDir, String fileName, boolean encrypt, boolean stream,
+                                         Callback callback) {
+        final Future<PreparedRecorder> future = pending;
+        pending = null;
+        executor.execute(() -> {
+            if (future != null) {
+                // Queued behind the prewarm, so this does not wait
+                try {
+                    PreparedRecorder prepared = future.get();
+                    if (prepared.matches(fileName, encrypt, stream)) {
+                        callback.onPrepared(prepared, true, null);
+                        return;
+                    }
+                    prepared.discard();
+                } catch (Exception e) {
+                    Log.w(TAG, "Prewarmed recorder unavailable, preparing on demand", e);
+                }
+            }
+
+            try {
+                callback.onPrepared(PreparedRecorder.prepare(recordsDir, fileName, encrypt, stream), false, null);
+            } catch (Exception e) {
+                callback.onPrepared(null, false, e);
+            }
+        });
+    }
+
+    /**
+     * Releases a recorder that was taken but will not be started.
+     */
+    public static void release(PreparedRecorder prepared) {
+        executor.execute(prepared::discard);
+    }
+
+    /**
+     * Drops any prewarmed recorder, e.g. when the user denies capture permission.
+     */
+    public static synchronized void discard() {
+        if (pending == null) return;
+
+        Future<PreparedRecorder> future = pending;
+        pending = null;
+        executor.execute(() -> {
+            try {
+                future.get().discard();
+            } catch (Exception e) {
+                // Prewarm failed, nothing to release
+            }
+        });
+    }
+
+    /**
+     * Duration of the last prewarm, or -1 if none has completed.
+     */
+    public static long getLastPrewarmMs() {
+        return prewarmMs;
+    }
+}
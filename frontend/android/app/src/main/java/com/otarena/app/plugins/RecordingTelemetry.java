@@ -0,0 +1,115 @@
+package com.otarena.app.plugins;
+
+import android.content.Context;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.otarena.app.recording.SessionTelemetry;
+import com.otarena.app.recording.TelemetryQueue;
+import com.otarena.app.recording.TelemetryUploader;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Device side of a recording session's {@link SessionTelemetry}: fills in the device and
+ * encoder, follows the thermal status while recording, and queues the summary when the
+ * session ends. The queue is flushed to the metrics endpoint whenever the app has one, so
+ * sessions recorded offline go out with a later upload.
+ */
+public class RecordingTelemetry {
+
+    private static final String TAG = "RecordingTelemetry";
+    private static final int MAX_QUEUED_SESSIONS = 200;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RecordingTelemetry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static TelemetryQueue queue;
+    private static String encoderName;
+
+    private final Context context;
+    private final SessionTelemetry session;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    public RecordingTelemetry(Context context) {
+        this.context = context.getApplicationContext();
+        this.session = new SessionTelemetry(System.currentTimeMillis(), PreparedRecorder.VIDEO_FRAME_RATE);
+        session.setDevice(Build.MODEL, Build.MANUFACTURER, Build.VERSION.SDK_INT);
+    }
+
+    public SessionTelemetry getSession() {
+        return session;
+    }
+
+    /**
+     * Counts thermal status changes until {@link #stopThermalWatch()}. Needs Android 10+.
+     */
+    public void startThermalWatch() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) return;
+        session.onThermalStatus(powerManager.getCurrentThermalStatus());
+        thermalListener = session::onThermalStatus;
+        powerManager.addThermalStatusListener(thermalListener);
+    }
+
+    public void stopThermalWatch() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || thermalListener == null) return;
+
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+        thermalListener = null;
+    }
+
+    /**
+     * Queues the summary and, if a metrics URL is known, uploads everything queued.
+     */
+    public void submit(String url, Map<String, String> headers) {
+        stopThermalWatch();
+        executor.execute(() -> {
+            try {
+                session.setCodec(getEncoderName());
+                TelemetryQueue sessions = getQueue(context);
+                sessions.add(session.toJson());
+                if (url != null) {
+                    int sent = new TelemetryUploader(url, headers).flush(sessions);
+                    Log.d(TAG, "Uploaded " + sent + " session summaries, " + sessions.size() + " queued");
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Session telemetry not sent: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Name of the codec MediaRecorder picks for the recording format, e.g. "c2.qti.avc.encoder".
+     */
+    private static synchronized String getEncoderName() {
+        if (encoderName == null) {
+            MediaFormat format = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC,
+                    PreparedRecorder.VIDEO_WIDTH, PreparedRecorder.VIDEO_HEIGHT);
+            String name = new MediaCodecList(MediaCodecList.REGULAR_CODECS).findEncoderForFormat(format);
+            encoderName = name != null ? name : "unknown";
+        }
+        return encoderName;
+    }
+
+    private static synchronized TelemetryQueue getQueue(Context context) {
+        if (queue == null) {
+            File dir = new File(context.getFilesDir(), "telemetry");
+            queue = new TelemetryQueue(new File(dir, "recording_sessions.jsonl"), MAX_QUEUED_SESSIONS);
+        }
+        return queue;
+    }
+}
@@ -0,0 +1,53 @@
+package com.otarena.app.plugins;
+
+/**
+ * A downscaled frame taken from the capture pipeline, kept free of Android types so
+ * analyzers can be exercised on the JVM.
+ */
+public class SampledFrame {
+
+    private final int width;
+    private final int height;
+    private final int[] argb;
+    private final long offsetMs;
+
+    public SampledFrame(int width, int height, int[] argb, long offsetMs) {
+        if (argb.length != width * height) {
+            throw new IllegalArgumentException("Expected " + (width * height) + " pixels, got " + argb.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.argb = argb;
+        this.offsetMs = offsetMs;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Pixels in row-major order, top row first.
+     */
+    public int[] getArgb() {
+        return argb;
+    }
+
+    /**
+     * Milliseconds since the recording started.
+     */
+    public long getOffsetMs() {
+        return offsetMs;
+    }
+
+    public int lumaAt(int x, int y) {
+        int pixel = argb[y * width + x];
+        int r = (pixel >> 16) & 0xff;
+        int g = (pixel >> 8) & 0xff;
+        int b = pixel & 0xff;
+        return (299 * r + 587 * g + 114 * b) / 1000;
+    }
+}
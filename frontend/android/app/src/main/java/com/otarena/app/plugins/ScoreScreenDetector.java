@@ -0,0 +1,86 @@
+package com.otarena.app.plugins;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Matches frames against known score screens using a 64-bit difference hash.
+ *
+ * Templates are hashes of reference screenshots (see {@link #hash(SampledFrame)}); a frame
+ * matches when its hash is within {@code maxDistance} bits of any template. The hash is
+ * built from a 9x8 luma grid so it is insensitive to resolution and mild compression.
+ */
+public class ScoreScreenDetector implements FrameAnalyzer {
+
+    public static final int DEFAULT_MAX_DISTANCE = 10;
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private final long[] templates;
+    private final int maxDistance;
+
+    public ScoreScreenDetector(long[] templates, int maxDistance) {
+        this.templates = templates.clone();
+        this.maxDistance = maxDistance;
+    }
+
+    public static ScoreScreenDetector fromHexTemplates(List<String> hexTemplates, int maxDistance) {
+        long[] templates = new long[hexTemplates.size()];
+        for (int i = 0; i < templates.length; i++) {
+            templates[i] = Long.parseUnsignedLong(hexTemplates.get(i), 16);
+        }
+        return new ScoreScreenDetector(templates, maxDistance);
+    }
+
+    @Override
+    public String getLabel() {
+        return "score screen";
+    }
+
+    @Override
+    public boolean matches(SampledFrame frame) {
+        long frameHash = hash(frame);
+        for (long template : templates) {
+            if (Long.bitCount(frameHash ^ template) <= maxDistance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static long hash(SampledFrame frame) {
+        int[] grid = new int[GRID_WIDTH * GRID_HEIGHT];
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            int y0 = gy * frame.getHeight() / GRID_HEIGHT;
+            int y1 = Math.max(y0 + 1, (gy + 1) * frame.getHeight() / GRID_HEIGHT);
+            for (int gx = 0; gx < GRID_WIDTH; gx++) {
+                int x0 = gx * frame.getWidth() / GRID_WIDTH;
+                int x1 = Math.max(x0 + 1, (gx + 1) * frame.getWidth() / GRID_WIDTH);
+
+                long sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        sum += frame.lumaAt(x, y);
+                    }
+                }
+                grid[gy * GRID_WIDTH + gx] = (int) (sum / ((long) (x1 - x0) * (y1 - y0)));
+            }
+        }
+
+        long hash = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH - 1; gx++) {
+                hash <<= 1;
+                if (grid[gy * GRID_WIDTH + gx] > grid[gy * GRID_WIDTH + gx + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static String toHex(long hash) {
+        return String.format(Locale.US, "%016x", hash);
+    }
+}
@@ -13,20 +13,35 @@ import android.content.SharedPreferences;
 import android.content.pm.ServiceInfo;
 import android.hardware.display.DisplayManager;
 import android.hardware.display.VirtualDisplay;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
 import android.media.MediaRecorder;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.StatFs;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
+import android.view.Surface;
 import android.os.ParcelFileDescriptor;
 import android.os.Environment;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
+import com.otarena.app.recording.RecordingFiles;
+import com.otarena.app.recording.RecordingLibrary;
+import com.otarena.app.recording.LiveSegmentUploader;
+import com.otarena.app.recording.LiveSegmenter;
+import com.otarena.app.recording.RecordingMarkers;
+import com.otarena.app.recording.SegmentSpool;
+import com.otarena.app.recording.StorageBudget;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,8 +51,14 @@ import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ScreenRecordService extends Service {
 
@@ -45,11 +66,41 @@ public class ScreenRecordService extends Service {
     public static final String EXTRA_DATA = "data";
     public static final String EXTRA_FILE_NAME = "fileName";
     public static final String EXTRA_AUTO_CLEANUP_DAYS = "autoCleanupDays";
+    public static final String EXTRA_MARKER_LABEL = "markerLabel";
+    public static final String EXTRA_SAMPLE_FPS = "sampleFps";
+    public static final String EXTRA_SCORE_TEMPLATES = "scoreScreenTemplates";
+    public static final String EXTRA_ENCRYPT = "encrypt";
+    public static final String EXTRA_REQUESTED_AT = "requestedAt";
+    public static final String EXTRA_PERMISSION_SHOWN_AT = "permissionShownAt";
+    public static final String EXTRA_GRANTED_AT = "grantedAt";
+    public static final String EXTRA_STREAM_URL = "liveStreamUrl";
+    public static final String EXTRA_STREAM_HEADERS = "liveStreamHeaders";
+    public static final String EXTRA_TELEMETRY_URL = "telemetryUrl";
+    public static final String EXTRA_TELEMETRY_HEADERS = "telemetryHeaders";
+    public static final String EXTRA_REQUEST_HEADERS = "requestHeaders";
     public static final String ACTION_STOP_RECORDING = "com.otarena.app.plugins.STOP_RECORDING";
+    public static final String ACTION_ADD_MARKER = "com.otarena.app.plugins.ADD_MARKER";
+    public static final String ACTION_UPDATE_HEADERS = "com.otarena.app.plugins.UPDATE_HEADERS";
 
     private static final String CHANNEL_ID = "screen_record_channel";
     private static final int NOTIFICATION_ID = 1;
     private static final int REQUEST_CODE_STOP = 1001;
+    private static final int REQUEST_CODE_MARKER = 1002;
+    private static final String NOTIFICATION_MARKER_LABEL = "Marked from notification";
+    private static final int MAX_SAMPLE_FPS = 2;
+    private static final int SAMPLE_WIDTH = 320;
+    private static final int SAMPLE_HEIGHT = 180;
+    private static final long EVIDENCE_COOLDOWN_MS = 5000;
+    private static final long PIPE_DRAIN_TIMEOUT_MS = 5000;
+    private static final long STORAGE_CHECK_INTERVAL_MS = 10 * 1000;
+    private static final long LOW_STORAGE_BYTES = StorageBudget.RESERVE_BYTES / 2;
+    private static final String STOP_REASON_USER = "user";
+    private static final String STOP_REASON_LOW_STORAGE = "lowStorage";
+    private static final String STOP_REASON_ERROR = "recorderError";
+    private static final long LIVE_SEGMENT_MS = 2000;
+    private static final int LIVE_MAX_SEGMENT_BYTES = 4 * 1024 * 1024;
+    private static final long LIVE_SPOOL_BYTES = 32L * 1024 * 1024;
+    private static final long LIVE_DRAIN_TIMEOUT_MS = 60 * 1000;
     private static final String PREFS_NAME = "ScreenRecordPrefs";
     private static final String KEY_LAST_FILE_PATH = "lastFilePath";
 
@@ -59,31 +110,116 @@ public class ScreenRecordService extends Service {
     private boolean isRecording = false;
     private String currentFilePath;
     private int autoCleanupDays = 7; // Default 7 days
+    private long recordingStartRealtime;
+    private JSONArray markers = new JSONArray();
+    private FrameSplitter frameSplitter;
+    private FrameAnalyzer frameAnalyzer;
+    private long lastEvidenceOffsetMs = -EVIDENCE_COOLDOWN_MS;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean encryptOutput = false;
+    private RecordingPipe recordingPipe;
+    private StartupTimings startupTimings;
+    private long grantedRealtime;
+    private StorageBudget storageBudget;
+    private String stopReason = STOP_REASON_USER;
+    private final Runnable storageCheck = this::checkFreeStorage;
+    private String liveStreamUrl;
+    private String liveStreamHeaders;
+    private SegmentSpool liveSpool;
+    private LiveSegmentUploader liveUploader;
+    private RecordingTelemetry telemetry;
+    private String telemetryUrl;
+    private String telemetryHeaders;
+    // Identifies the start waiting for its recorder; cleared when the service stops first
+    private Object pendingStart;
+
+    // Disk work kept off the main thread, in order: marker writes, then finalizing the recording
+    private static final ExecutorService fileExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RecordingFinalize");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile boolean recordingActive = false;
+    private static volatile RecordingEventListener eventListener;
+
+    public interface RecordingEventListener {
+        /**
+         * Called on the main thread.
+         */
+        void onRecordingEvent(String event, JSONObject data);
+    }
+
+    public static boolean isRecordingActive() {
+        return recordingActive;
+    }
+
+    public static void setEventListener(RecordingEventListener listener) {
+        eventListener = listener;
+    }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        long serviceStartRealtime = SystemClock.elapsedRealtime();
         if (intent != null && ACTION_STOP_RECORDING.equals(intent.getAction())) {
+            stopReason = STOP_REASON_USER;
             stopRecordingAndExit();
             return START_NOT_STICKY;
         }
 
-        createNotificationChannel();
+        if (intent != null && ACTION_ADD_MARKER.equals(intent.getAction())) {
+            if (isRecording) {
+                addMarker(intent.getStringExtra(EXTRA_MARKER_LABEL));
+            } else {
+                Log.w("ScreenRecordService", "Ignoring marker, no recording in progress");
+                if (pendingStart == null) stopSelf(startId);
+            }
+            return START_NOT_STICKY;
+        }
+
+        if (intent != null && ACTION_UPDATE_HEADERS.equals(intent.getAction())) {
+            if (isRecording) {
+                updateRequestHeaders(intent.getStringExtra(EXTRA_REQUEST_HEADERS));
+            } else if (pendingStart == null) {
+                stopSelf(startId);
+            }
+            return START_NOT_STICKY;
+        }
+
+        startupTimings = new StartupTimings();
+        startupTimings.begin("notificationChannel");
+        createNotificationChannel(this);
+        startupTimings.end();
 
         // Start foreground IMMEDIATELY
+        startupTimings.begin("startForeground");
         Notification notification = createRecordingNotification();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
             startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_MEDIA_PROJECTION);
         } else {
             startForeground(NOTIFICATION_ID, notification);
         }
+        startupTimings.end();
 
         if (intent == null) {
             stopSelf();
             return START_NOT_STICKY;
         }
 
+        long requestedRealtime = intent.getLongExtra(EXTRA_REQUESTED_AT, 0);
+        long permissionShownRealtime = intent.getLongExtra(EXTRA_PERMISSION_SHOWN_AT, 0);
+        grantedRealtime = intent.getLongExtra(EXTRA_GRANTED_AT, 0);
+        startupTimings.put("requestToPermissionDialog", requestedRealtime, permissionShownRealtime);
+        startupTimings.put("permissionDialog", permissionShownRealtime, grantedRealtime);
+        startupTimings.put("serviceLaunch", grantedRealtime, serviceStartRealtime);
+
         int resultCode = intent.getIntExtra(EXTRA_RESULT_CODE, -1);
         autoCleanupDays = intent.getIntExtra(EXTRA_AUTO_CLEANUP_DAYS, 7);
+        encryptOutput = intent.getBooleanExtra(EXTRA_ENCRYPT, false);
+        liveStreamUrl = intent.getStringExtra(EXTRA_STREAM_URL);
+        liveStreamHeaders = intent.getStringExtra(EXTRA_STREAM_HEADERS);
+        telemetryUrl = intent.getStringExtra(EXTRA_TELEMETRY_URL);
+        telemetryHeaders = intent.getStringExtra(EXTRA_TELEMETRY_HEADERS);
 
         // FIX: Use the new type-safe way to get Parcelable for Android 13+
         Intent data;
@@ -93,9 +229,17 @@ public class ScreenRecordService extends Service {
             data = intent.getParcelableExtra(EXTRA_DATA);
         }
 
+        String[] templates = intent.getStringArrayExtra(EXTRA_SCORE_TEMPLATES);
+        int sampleFps = Math.min(intent.getIntExtra(EXTRA_SAMPLE_FPS, 0), MAX_SAMPLE_FPS);
+        frameAnalyzer = null;
+        if (sampleFps > 0 && templates != null && templates.length > 0) {
+            frameAnalyzer = ScoreScreenDetector.fromHexTemplates(
+                    Arrays.asList(templates), ScoreScreenDetector.DEFAULT_MAX_DISTANCE);
+        }
+
         if (resultCode == Activity.RESULT_OK && data != null) {
             String fileName = intent.getStringExtra(EXTRA_FILE_NAME);
-            startRecording(resultCode, data, fileName != null ? fileName : generateFileName());
+            startRecording(resultCode, data, fileName != null ? fileName : generateFileName(), sampleFps);
         } else {
             Log.e("ScreenRecordService", "No projection data provided! ResultCode: " + resultCode);
             stopSelf();
@@ -109,49 +253,109 @@ public class ScreenRecordService extends Service {
         return "recording_" + sdf.format(new Date()) + ".mp4";
     }
 
-    private void startRecording(int resultCode, Intent data, String fileName) {
+    private void startRecording(int resultCode, Intent data, String fileName, int sampleFps) {
+        telemetry = new RecordingTelemetry(this);
         try {
             MediaProjectionManager projectionManager =
                     (MediaProjectionManager) getSystemService(Context.MEDIA_PROJECTION_SERVICE);
 
+            startupTimings.begin("mediaProjection");
             mediaProjection = projectionManager.getMediaProjection(resultCode, data);
+            startupTimings.end();
+
+            // The recorder is prepared off the main thread; recording continues once it is ready
+            final long prepareRealtime = SystemClock.elapsedRealtime();
+            final Object start = new Object();
+            pendingStart = start;
+            RecordingPrewarm.take(getRecordsDirectory(), fileName, encryptOutput, liveStreamUrl != null,
+                    (prepared, prewarmed, error) -> mainHandler.post(() -> {
+                        if (pendingStart != start) {
+                            if (prepared != null) RecordingPrewarm.release(prepared);
+                            return;
+                        }
+                        pendingStart = null;
+                        startupTimings.put("recorderPrepare", prepareRealtime, SystemClock.elapsedRealtime());
+                        if (error != null) {
+                            failStart(error);
+                        } else {
+                            startPrepared(prepared, prewarmed, sampleFps);
+                        }
+                    }));
+        } catch (Exception e) {
+            failStart(e);
+        }
+    }
 
-            // Configure MediaRecorder
-            mediaRecorder = new MediaRecorder();
-            // Optional: Add Audio if you want sound
-            // mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-            mediaRecorder.setVideoSource(MediaRecorder.VideoSource.SURFACE);
-            mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.MPEG_4);
-            mediaRecorder.setVideoEncoder(MediaRecorder.VideoEncoder.H264);
-            mediaRecorder.setVideoEncodingBitRate(8 * 1000 * 1000);
-            mediaRecorder.setVideoFrameRate(30);
-
-            // Use screen dimensions or fixed size
-            mediaRecorder.setVideoSize(1280, 720);
-
-            // Save to app's private storage
-            File recordsDir = getRecordsDirectory();
-            if (!recordsDir.exists()) {
-                recordsDir.mkdirs();
+    private void startPrepared(PreparedRecorder prepared, boolean prewarmed, int sampleFps) {
+        try {
+            boolean stream = liveStreamUrl != null;
+            mediaRecorder = prepared.recorder;
+            recordingPipe = prepared.pipe;
+            storageBudget = prepared.budget;
+            mediaRecorder.setOnInfoListener(this::onRecorderInfo);
+            mediaRecorder.setOnErrorListener((recorder, what, extra) -> {
+                Log.e("ScreenRecordService", "Recorder error " + what + "/" + extra + ", finalizing recording");
+                telemetry.getSession().setFailure("recorderError:" + what + "/" + extra);
+                stopReason = STOP_REASON_ERROR;
+                stopRecordingAndExit();
+            });
+            File outputFile = prepared.outputFile;
+            currentFilePath = outputFile.getAbsolutePath();
+            telemetry.getSession().setOutput(storageBudget.getBitRate(), encryptOutput, stream);
+            if (recordingPipe != null) {
+                recordingPipe.setTelemetry(telemetry.getSession());
             }
 
-            File outputFile = new File(recordsDir, fileName);
-            currentFilePath = outputFile.getAbsolutePath();
+            Surface displaySurface = mediaRecorder.getSurface();
+            if (frameAnalyzer != null) {
+                startupTimings.begin("frameSplitter");
+                displaySurface = startFrameSampling(displaySurface, sampleFps);
+                startupTimings.end();
+                if (frameSplitter != null) {
+                    frameSplitter.setTelemetry(telemetry.getSession());
+                }
+            }
 
-            mediaRecorder.setOutputFile(currentFilePath);
-            mediaRecorder.prepare();
+            if (stream) {
+                startLiveStream(outputFile);
+            }
 
+            startupTimings.begin("createVirtualDisplay");
             virtualDisplay = mediaProjection.createVirtualDisplay(
                     "ScreenRecorder",
-                    1280, 720,
+                    PreparedRecorder.VIDEO_WIDTH, PreparedRecorder.VIDEO_HEIGHT,
                     getResources().getDisplayMetrics().densityDpi,
                     DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
-                    mediaRecorder.getSurface(),
+                    displaySurface,
                     null, null
             );
+            startupTimings.end();
 
+            startupTimings.begin("recorderStart");
             mediaRecorder.start();
+            startupTimings.end();
+            recordingStartRealtime = SystemClock.elapsedRealtime();
+            startupTimings.put("grantToRecording", grantedRealtime, recordingStartRealtime);
+            final boolean usedPrewarm = prewarmed;
+            if (frameSplitter != null) {
+                // The splitter sees the first frame on its way to the encoder
+                frameSplitter.setFirstFrameListener(() -> {
+                    long firstFrameRealtime = SystemClock.elapsedRealtime();
+                    mainHandler.post(() -> reportStartupTimings(usedPrewarm, firstFrameRealtime));
+                });
+            } else {
+                reportStartupTimings(usedPrewarm, 0);
+            }
+            markers = new JSONArray();
+            stopReason = STOP_REASON_USER;
             isRecording = true;
+            recordingActive = true;
+            telemetry.startThermalWatch();
+            mainHandler.postDelayed(storageCheck, STORAGE_CHECK_INTERVAL_MS);
+            Log.d("ScreenRecordService", String.format(Locale.US,
+                    "Storage budget: %d MB at %d kbps, about %d min",
+                    storageBudget.getMaxFileBytes() / (1024 * 1024), storageBudget.getBitRate() / 1000,
+                    storageBudget.getMaxDurationMs() / 60000));
 
             // Save file info
             saveFileInfo(outputFile);
@@ -160,14 +364,363 @@ public class ScreenRecordService extends Service {
             updateNotificationWithControls();
 
         } catch (Exception e) {
-            e.printStackTrace();
-            stopSelf(); // Stop service if setup fails
+            failStart(e);
+        }
+    }
+
+    private void failStart(Exception e) {
+        e.printStackTrace();
+        startupTimings.end();
+        if (frameSplitter != null) {
+            frameSplitter.release();
+            frameSplitter = null;
+        }
+        if (mediaRecorder != null) {
+            mediaRecorder.release();
+            mediaRecorder = null;
+        }
+        if (recordingPipe != null) {
+            recordingPipe.closeWriteSide();
+            recordingPipe = null;
+        }
+        if (liveSpool != null) {
+            liveSpool.close();
+            finishLiveStream(null);
+        }
+        telemetry.getSession().setFailure("startFailed:" + e.getClass().getSimpleName());
+        submitTelemetry();
+        stopSelf(); // Stop service if setup fails
+    }
+
+    /**
+     * Logs the startup phases and forwards them to the plugin. {@code firstFrameRealtime} is 0
+     * when no frame splitter is in the path, in which case the recorder start stands in for it.
+     */
+    private void reportStartupTimings(boolean prewarmed, long firstFrameRealtime) {
+        try {
+            startupTimings.put("grantToFirstFrame", grantedRealtime, firstFrameRealtime);
+            JSONObject phases = startupTimings.toJson();
+            long endRealtime = firstFrameRealtime > 0 ? firstFrameRealtime : recordingStartRealtime;
+            long grantToFirstFrameMs = grantedRealtime > 0 ? endRealtime - grantedRealtime : -1;
+
+            JSONObject data = new JSONObject();
+            data.put("phases", phases);
+            data.put("prewarmed", prewarmed);
+            data.put("prewarmMs", RecordingPrewarm.getLastPrewarmMs());
+            data.put("bitRate", storageBudget.getBitRate());
+            data.put("maxDurationMs", storageBudget.getMaxDurationMs());
+            data.put("firstFrameObserved", firstFrameRealtime > 0);
+            data.put("grantToFirstFrameMs", grantToFirstFrameMs);
+            data.put("targetMs", StartupTimings.TARGET_GRANT_TO_FIRST_FRAME_MS);
+            data.put("withinTarget", grantToFirstFrameMs >= 0
+                    && grantToFirstFrameMs <= StartupTimings.TARGET_GRANT_TO_FIRST_FRAME_MS);
+            if (telemetry != null) {
+                telemetry.getSession().setStartLatency(grantToFirstFrameMs, prewarmed);
+            }
+
+            if (grantToFirstFrameMs > StartupTimings.TARGET_GRANT_TO_FIRST_FRAME_MS) {
+                Log.w("ScreenRecordService", "Slow recording start (" + grantToFirstFrameMs + "ms): " + phases);
+            } else {
+                Log.d("ScreenRecordService", "Recording start timings: " + phases);
+            }
+
+            emitEvent("recordingStartTimings", data);
+        } catch (Exception e) {
+            Log.e("ScreenRecordService", "Error reporting startup timings", e);
+        }
+    }
+
+    private void emitEvent(String event, JSONObject data) {
+        RecordingEventListener listener = eventListener;
+        if (listener != null) {
+            listener.onRecordingEvent(event, data);
+        }
+    }
+
+    private void onRecorderInfo(MediaRecorder recorder, int what, int extra) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_FILESIZE_APPROACHING) {
+            emitLowStorage();
+        } else if (what == MediaRecorder.MEDIA_RECORDER_INFO_MAX_FILESIZE_REACHED) {
+            // The recorder has already stopped writing; finalize while the reserve is still free
+            Log.w("ScreenRecordService", "Storage budget used up, finalizing recording");
+            stopReason = STOP_REASON_LOW_STORAGE;
+            stopRecordingAndExit();
+        }
+    }
+
+    /**
+     * Catches space taken by something other than this recording, which the recorder's own
+     * size limit can't see.
+     */
+    private void checkFreeStorage() {
+        if (!isRecording) return;
+
+        long availableBytes = new StatFs(getRecordsDirectory().getAbsolutePath()).getAvailableBytes();
+        if (availableBytes < LOW_STORAGE_BYTES) {
+            Log.w("ScreenRecordService", "Free storage down to " + availableBytes + " bytes, finalizing recording");
+            emitLowStorage();
+            stopReason = STOP_REASON_LOW_STORAGE;
+            stopRecordingAndExit();
+            return;
+        }
+        mainHandler.postDelayed(storageCheck, STORAGE_CHECK_INTERVAL_MS);
+    }
+
+    private void emitLowStorage() {
+        try {
+            JSONObject data = new JSONObject();
+            data.put("filePath", currentFilePath);
+            data.put("availableBytes", new StatFs(getRecordsDirectory().getAbsolutePath()).getAvailableBytes());
+            data.put("maxFileBytes", storageBudget != null ? storageBudget.getMaxFileBytes() : -1);
+            emitEvent("recordingLowStorage", data);
+        } catch (Exception e) {
+            Log.e("ScreenRecordService", "Error reporting low storage", e);
+        }
+    }
+
+    /**
+     * Tees the recorder output into short segments that are uploaded while recording. The
+     * recorder only ever writes to the local spool; the upload runs on its own thread.
+     */
+    private void startLiveStream(File outputFile) {
+        if (recordingPipe == null) {
+            Log.w("ScreenRecordService", "Live streaming needs Android 8.0+, recording without it");
+            return;
+        }
+
+        try {
+            Map<String, String> headers = parseHeaders(liveStreamHeaders);
+
+            File spoolDir = new File(new File(getCacheDir(), "live_segments"), outputFile.getName());
+            liveSpool = new SegmentSpool(spoolDir, LIVE_SPOOL_BYTES);
+            liveUploader = new LiveSegmentUploader(liveSpool, liveStreamUrl, headers);
+            liveUploader.start();
+            recordingPipe.setTap(new LiveSegmenter(liveSpool, LIVE_SEGMENT_MS, LIVE_MAX_SEGMENT_BYTES,
+                    SystemClock::elapsedRealtime));
+        } catch (Exception e) {
+            Log.e("ScreenRecordService", "Live streaming unavailable, recording without it", e);
+            if (liveSpool != null) {
+                liveSpool.close();
+                finishLiveStream(null);
+            }
+        }
+    }
+
+    /**
+     * Swaps in fresh headers (a renewed auth token) for the live stream and the telemetry upload,
+     * which would otherwise keep the token captured when the recording started.
+     */
+    private void updateRequestHeaders(String headersJson) {
+        try {
+            Map<String, String> headers = parseHeaders(headersJson);
+            if (liveStreamUrl != null) {
+                liveStreamHeaders = headersJson;
+                if (liveUploader != null) {
+                    liveUploader.setHeaders(headers);
+                }
+            }
+            if (telemetryUrl != null) {
+                telemetryHeaders = headersJson;
+            }
+        } catch (JSONException e) {
+            Log.e("ScreenRecordService", "Ignoring invalid request headers", e);
+        }
+    }
+
+    private static Map<String, String> parseHeaders(String headersJson) throws JSONException {
+        Map<String, String> headers = new HashMap<>();
+        if (headersJson != null) {
+            JSONObject json = new JSONObject(headersJson);
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                headers.put(key, json.getString(key));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Queues the session summary and uploads pending summaries if the app gave a metrics URL.
+     */
+    private void submitTelemetry() {
+        if (telemetry == null) return;
+
+        RecordingTelemetry session = telemetry;
+        telemetry = null;
+        try {
+            session.submit(telemetryUrl, parseHeaders(telemetryHeaders));
+        } catch (JSONException e) {
+            Log.e("ScreenRecordService", "Invalid telemetry headers, queueing only", e);
+            session.submit(null, null);
+        }
+    }
+
+    /**
+     * Lets the uploader send what is left in the spool in the background, then reports how the
+     * stream went. Runs after the pipe has closed the segmenter, so no more segments arrive.
+     */
+    private void finishLiveStream(String filePath) {
+        final SegmentSpool spool = liveSpool;
+        final LiveSegmentUploader uploader = liveUploader;
+        liveSpool = null;
+        liveUploader = null;
+        if (spool == null) return;
+
+        Thread drain = new Thread(() -> {
+            try {
+                boolean completed = uploader != null && uploader.finish(LIVE_DRAIN_TIMEOUT_MS);
+
+                JSONObject data = new JSONObject();
+                data.put("filePath", filePath);
+                data.put("completed", completed);
+                data.put("segmentsSent", uploader != null ? uploader.getSegmentsSent() : 0);
+                data.put("bytesSent", uploader != null ? uploader.getBytesSent() : 0);
+                data.put("droppedSegments", spool.getDroppedSegments());
+                data.put("failure", uploader != null ? uploader.getFailure() : null);
+                Log.d("ScreenRecordService", "Live stream finished: " + data);
+                mainHandler.post(() -> emitEvent("liveStreamFinished", data));
+            } catch (Exception e) {
+                Log.e("ScreenRecordService", "Error finishing live stream", e);
+            } finally {
+                spool.delete();
+            }
+        }, "LiveStreamDrain");
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    /**
+     * Routes the display through a {@link FrameSplitter} so a low-rate copy of the frames can be
+     * analyzed. Falls back to feeding the encoder directly if the GL pipeline can't be set up.
+     */
+    private Surface startFrameSampling(Surface encoderSurface, int sampleFps) {
+        final FrameAnalyzer analyzer = frameAnalyzer;
+        final File recording = new File(currentFilePath);
+        lastEvidenceOffsetMs = -EVIDENCE_COOLDOWN_MS;
+
+        frameSplitter = new FrameSplitter(
+                encoderSurface, PreparedRecorder.VIDEO_WIDTH, PreparedRecorder.VIDEO_HEIGHT,
+                SAMPLE_WIDTH, SAMPLE_HEIGHT, 1000L / sampleFps,
+                frame -> {
+                    if (frame.getOffsetMs() - lastEvidenceOffsetMs < EVIDENCE_COOLDOWN_MS) return;
+                    if (!analyzer.matches(frame)) return;
+
+                    lastEvidenceOffsetMs = frame.getOffsetMs();
+                    try {
+                        File still = EvidenceStills.save(recording, frame, analyzer.getLabel());
+                        Log.d("ScreenRecordService", "Saved evidence still " + still.getName());
+                    } catch (IOException e) {
+                        Log.e("ScreenRecordService", "Error saving evidence still", e);
+                    }
+                    mainHandler.post(() -> {
+                        if (isRecording) addMarker(analyzer.getLabel());
+                    });
+                });
+
+        try {
+            return frameSplitter.start();
+        } catch (Exception e) {
+            Log.e("ScreenRecordService", "Frame sampling unavailable, recording without it", e);
+            frameSplitter = null;
+            return encoderSurface;
+        }
+    }
+
+    private void addMarker(String label) {
+        try {
+            long offsetMs = SystemClock.elapsedRealtime() - recordingStartRealtime;
+            String markerLabel = label != null && !label.isEmpty() ? label : "marker";
+            markers.put(RecordingMarkers.newMarker(markerLabel, offsetMs, System.currentTimeMillis()));
+            final File recording = new File(currentFilePath);
+            final JSONArray snapshot = new JSONArray(markers.toString());
+            fileExecutor.execute(() -> {
+                try {
+                    RecordingMarkers.write(recording, snapshot);
+                } catch (Exception e) {
+                    Log.e("ScreenRecordService", "Error writing markers", e);
+                }
+            });
+            Log.d("ScreenRecordService", "Marker '" + markerLabel + "' at " + offsetMs + "ms");
+        } catch (Exception e) {
+            Log.e("ScreenRecordService", "Error adding marker", e);
+        }
+    }
+
+    /**
+     * Once the MP4 is finalized, store the nearest preceding keyframe for every marker so that
+     * seeking or cutting a clip at a marker does not need to walk the sample tables again.
+     * Reads the whole recording; runs on {@link #fileExecutor}.
+     */
+    private static void resolveMarkerKeyframes(String filePath, JSONArray markers) {
+        if (markers.length() == 0) return;
+
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            File recording = new File(filePath);
+            if (RecordingFiles.isEncrypted(recording)) {
+                extractor.setDataSource(new DecryptingMediaDataSource(EncryptedRecordings.openReader(recording)));
+            } else {
+                extractor.setDataSource(filePath);
+            }
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("video/")) {
+                    extractor.selectTrack(i);
+                    break;
+                }
+            }
+
+            for (int i = 0; i < markers.length(); i++) {
+                JSONObject marker = markers.getJSONObject(i);
+                long offsetUs = marker.getLong(RecordingMarkers.KEY_OFFSET_MS) * 1000L;
+                extractor.seekTo(offsetUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                long keyframeUs = extractor.getSampleTime();
+                marker.put(RecordingMarkers.KEY_KEYFRAME_US, keyframeUs >= 0 ? keyframeUs : 0);
+            }
+
+            RecordingMarkers.write(recording, markers);
+        } catch (Exception e) {
+            Log.e("ScreenRecordService", "Error resolving marker keyframes", e);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Waits for the encrypting pipe to flush its final chunk once the recorder has released it.
+     */
+    private void finishRecordingPipe() throws InterruptedException {
+        if (recordingPipe == null) return;
+
+        RecordingPipe pipe = recordingPipe;
+        recordingPipe = null;
+        if (!pipe.awaitFinished(PIPE_DRAIN_TIMEOUT_MS)) {
+            Log.e("ScreenRecordService", "Encrypted output did not finish within " + PIPE_DRAIN_TIMEOUT_MS + "ms");
+            return;
+        }
+        if (pipe.getSinkError() != null) {
+            Log.e("ScreenRecordService", "Encrypted output is incomplete", pipe.getSinkError());
+            if (telemetry != null) telemetry.getSession().setFailure("sinkError");
+        }
+
+        if (pipe.getSinkNanos() > 0) {
+            double bytesPerSecond = pipe.getBytesWritten() * 1e9 / pipe.getSinkNanos();
+            double headroom = bytesPerSecond / (PreparedRecorder.VIDEO_BIT_RATE / 8.0);
+            Log.d("ScreenRecordService", String.format(Locale.US,
+                    "Encrypted %d bytes at %.1f MB/s (%.0fx encoder bitrate)",
+                    pipe.getBytesWritten(), bytesPerSecond / 1e6, headroom));
         }
     }
 
     private File getRecordsDirectory() {
+        return getRecordsDirectory(this);
+    }
+
+    static File getRecordsDirectory(Context context) {
         // Use app's private storage
-        return new File(getExternalFilesDir(Environment.DIRECTORY_MOVIES), "OTArena_Recordings");
+        return new File(context.getExternalFilesDir(Environment.DIRECTORY_MOVIES), "OTArena_Recordings");
     }
 
     private void saveFileInfo(File file) {
@@ -184,9 +737,10 @@ public class ScreenRecordService extends Service {
             fileInfo.put("size", file.length());
             fileInfo.put("created", System.currentTimeMillis());
             fileInfo.put("duration", 0); // Will be updated when recording stops
+            fileInfo.put("encrypted", RecordingFiles.isEncrypted(file));
 
             // Save to a metadata file
-            saveToMetadataFile(fileInfo);
+            new RecordingLibrary(getRecordsDirectory()).addEntry(fileInfo);
 
             editor.apply();
 
@@ -195,33 +749,42 @@ public class ScreenRecordService extends Service {
         }
     }
 
-    private void saveToMetadataFile(JSONObject fileInfo) throws JSONException, IOException {
-        File metaFile = new File(getRecordsDirectory(), "recordings_metadata.json");
-        JSONArray recordingsArray;
-
-        if (metaFile.exists()) {
-            String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-            recordingsArray = new JSONArray(content);
-        } else {
-            recordingsArray = new JSONArray();
-        }
-
-        recordingsArray.put(fileInfo);
-
-        FileOutputStream fos = new FileOutputStream(metaFile);
-        fos.write(recordingsArray.toString(2).getBytes());
-        fos.close();
-    }
-
     private void stopRecordingAndExit() {
+        mainHandler.removeCallbacks(storageCheck);
+        // A recorder still being prepared is released when it arrives
+        pendingStart = null;
+        String stoppedPath = isRecording ? currentFilePath : null;
+        long recordedMs = SystemClock.elapsedRealtime() - recordingStartRealtime;
+        boolean finalizing = false;
         try {
+            if (virtualDisplay != null && frameSplitter != null) {
+                // Stop feeding the encoder before it is stopped
+                virtualDisplay.release();
+                virtualDisplay = null;
+            }
+            if (frameSplitter != null) {
+                frameSplitter.release();
+                frameSplitter = null;
+            }
             if (mediaRecorder != null && isRecording) {
-                mediaRecorder.stop();
+                try {
+                    mediaRecorder.stop();
+                } catch (RuntimeException e) {
+                    // Already stopped by the size limit or an error; what was written is kept
+                    Log.w("ScreenRecordService", "Recorder stop failed: " + e.getMessage());
+                }
                 mediaRecorder.release();
                 mediaRecorder = null;
+                finishRecordingPipe();
+                finishLiveStream(stoppedPath);
 
-                // Update metadata with duration (you can calculate this based on start time)
-                updateRecordingMetadata();
+                if (telemetry != null) {
+                    if (!STOP_REASON_USER.equals(stopReason)) {
+                        telemetry.getSession().setFailure(stopReason);
+                    }
+                    telemetry.getSession().finish(recordedMs, new File(stoppedPath).length());
+                }
+                submitTelemetry();
             }
             if (virtualDisplay != null) {
                 virtualDisplay.release();
@@ -232,90 +795,77 @@ public class ScreenRecordService extends Service {
                 mediaProjection = null;
             }
             isRecording = false;
-
-            // Perform auto-cleanup
-            performAutoCleanup();
+            recordingActive = false;
+
+            // The index update, keyframe pass and cleanup read and write whole files
+            final JSONArray stoppedMarkers = markers;
+            final String reason = stopReason;
+            final File recordsDir = getRecordsDirectory();
+            final int cleanupDays = autoCleanupDays;
+            fileExecutor.execute(() -> {
+                if (stoppedPath != null) {
+                    updateRecordingMetadata(recordsDir, stoppedPath, recordedMs);
+                    resolveMarkerKeyframes(stoppedPath, stoppedMarkers);
+                }
+                performAutoCleanup(recordsDir, cleanupDays);
+                mainHandler.post(() -> finishStop(stoppedPath, reason));
+            });
+            finalizing = true;
 
         } catch (Exception e) {
             Log.e("ScreenRecordService", "Error stopping recording: " + e.getMessage());
         } finally {
-            // Stop foreground and remove notification
-            stopForeground(true);
-            stopSelf();
+            if (!finalizing) {
+                // Stop foreground and remove notification
+                stopForeground(true);
+                stopSelf();
+            }
         }
     }
 
-    private void updateRecordingMetadata() {
-        try {
-            File metaFile = new File(getRecordsDirectory(), "recordings_metadata.json");
-            if (metaFile.exists()) {
-                String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-                JSONArray recordingsArray = new JSONArray(content);
-
-                if (recordingsArray.length() > 0) {
-                    JSONObject lastRecording = recordingsArray.getJSONObject(recordingsArray.length() - 1);
-                    // Here you can update with actual duration if you track it
-                    // lastRecording.put("duration", recordingDuration);
-
-                    FileOutputStream fos = new FileOutputStream(metaFile);
-                    fos.write(recordingsArray.toString(2).getBytes());
-                    fos.close();
-                }
+    /**
+     * Reports the stop once the recording is finalized, then lets the service go unless a new
+     * recording has started in the meantime.
+     */
+    private void finishStop(String stoppedPath, String reason) {
+        if (stoppedPath != null) {
+            try {
+                JSONObject data = new JSONObject();
+                data.put("filePath", stoppedPath);
+                data.put("reason", reason);
+                emitEvent("recordingStopped", data);
+            } catch (JSONException e) {
+                Log.e("ScreenRecordService", "Error reporting stop", e);
             }
-        } catch (Exception e) {
-            Log.e("ScreenRecordService", "Error updating metadata", e);
         }
-    }
+        if (isRecording || pendingStart != null) return;
 
-    private void performAutoCleanup() {
-        if (autoCleanupDays <= 0) return;
+        // Stop foreground and remove notification
+        stopForeground(true);
+        stopSelf();
+    }
 
+    private static void updateRecordingMetadata(File recordsDir, String filePath, long durationMs) {
         try {
-            File recordsDir = getRecordsDirectory();
-            File[] files = recordsDir.listFiles();
-            if (files == null) return;
-
-            long cutoffTime = System.currentTimeMillis() - (autoCleanupDays * 24 * 60 * 60 * 1000L);
-
-            for (File file : files) {
-                if (file.isFile() && file.getName().endsWith(".mp4")) {
-                    if (file.lastModified() < cutoffTime) {
-                        file.delete();
-                        Log.d("ScreenRecordService", "Auto-deleted old file: " + file.getName());
-                    }
-                }
-            }
-
-            // Clean up metadata file
-            cleanupMetadataFile();
-
+            JSONObject fields = new JSONObject();
+            fields.put("duration", durationMs);
+            fields.put("size", new File(filePath).length());
+            new RecordingLibrary(recordsDir).updateEntry(filePath, fields);
         } catch (Exception e) {
-            Log.e("ScreenRecordService", "Error in auto-cleanup", e);
+            Log.e("ScreenRecordService", "Error updating metadata", e);
         }
     }
 
-    private void cleanupMetadataFile() {
-        try {
-            File metaFile = new File(getRecordsDirectory(), "recordings_metadata.json");
-            if (metaFile.exists()) {
-                String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-                JSONArray recordingsArray = new JSONArray(content);
-                JSONArray newArray = new JSONArray();
-
-                for (int i = 0; i < recordingsArray.length(); i++) {
-                    JSONObject recording = recordingsArray.getJSONObject(i);
-                    File file = new File(recording.getString("path"));
-                    if (file.exists()) {
-                        newArray.put(recording);
-                    }
-                }
+    private static void performAutoCleanup(File recordsDir, int autoCleanupDays) {
+        if (autoCleanupDays <= 0) return;
 
-                FileOutputStream fos = new FileOutputStream(metaFile);
-                fos.write(newArray.toString(2).getBytes());
-                fos.close();
+        try {
+            RecordingLibrary library = new RecordingLibrary(recordsDir);
+            for (String name : library.deleteOlderThan(autoCleanupDays, System.currentTimeMillis())) {
+                Log.d("ScreenRecordService", "Auto-deleted old file: " + name);
             }
         } catch (Exception e) {
-            Log.e("ScreenRecordService", "Error cleaning up metadata", e);
+            Log.e("ScreenRecordService", "Error in auto-cleanup", e);
         }
     }
 
@@ -341,6 +891,27 @@ public class ScreenRecordService extends Service {
             );
         }
 
+        Intent markerIntent = new Intent(this, ScreenRecordService.class);
+        markerIntent.setAction(ACTION_ADD_MARKER);
+        markerIntent.putExtra(EXTRA_MARKER_LABEL, NOTIFICATION_MARKER_LABEL);
+
+        PendingIntent markerPendingIntent;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            markerPendingIntent = PendingIntent.getService(
+                    this,
+                    REQUEST_CODE_MARKER,
+                    markerIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+            );
+        } else {
+            markerPendingIntent = PendingIntent.getService(
+                    this,
+                    REQUEST_CODE_MARKER,
+                    markerIntent,
+                    PendingIntent.FLAG_UPDATE_CURRENT
+            );
+        }
+
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("Screen recording")
                 .setContentText("Recording in progress...")
@@ -354,6 +925,11 @@ public class ScreenRecordService extends Service {
                         "Stop Recording",
                         stopPendingIntent
                 )
+                .addAction(
+                        android.R.drawable.ic_menu_myplaces,
+                        "Mark Moment",
+                        markerPendingIntent
+                )
                 .setStyle(new NotificationCompat.BigTextStyle()
                         .bigText("Screen recording is in progress. Tap 'Stop Recording' to stop and save the video.")
                         .setBigContentTitle("Screen Recording Active")
@@ -373,7 +949,7 @@ public class ScreenRecordService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (isRecording) {
+        if (isRecording || pendingStart != null) {
             stopRecordingAndExit();
         }
     }
@@ -382,7 +958,7 @@ public class ScreenRecordService extends Service {
     @Override
     public IBinder onBind(Intent intent) { return null; }
 
-    private void createNotificationChannel() {
+    static void createNotificationChannel(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
                     CHANNEL_ID,
@@ -392,7 +968,7 @@ public class ScreenRecordService extends Service {
             channel.setDescription("Screen recording notifications");
             channel.setShowBadge(false);
             channel.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
-            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
         }
     }
 }
\ No newline at end of file
@@ -5,7 +5,10 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.provider.Settings;
+import android.util.Base64;
 import android.util.Log;
 
 import com.getcapacitor.Plugin;
@@ -14,6 +17,9 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.JSArray;
+import com.otarena.app.recording.RecordingFiles;
+import com.otarena.app.recording.RecordingLibrary;
+import com.otarena.app.recording.RecordingMarkers;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -23,7 +29,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -39,6 +50,35 @@ public class ScreenRecorderPlugin extends Plugin {
     private static final String TAG = "ScreenRecorderPlugin";
     private static final int SCREEN_CAPTURE_REQUEST_CODE = 1234;
     private static final int OVERLAY_PERMISSION_REQUEST_CODE = 5678;
+    private static final int MAX_READ_CHUNK = 4 * 1024 * 1024;
+    private static final int PERMISSION_TRACE_COOKIE = SCREEN_CAPTURE_REQUEST_CODE;
+
+    private String pendingFileName;
+    // Reader for chunked reads of an encrypted recording. Opening one unwraps its key through
+    // the Keystore, so it is kept open until the last chunk has been read.
+    private ChunkedGcmReader chunkReader;
+    private String chunkReaderPath;
+    private long requestedRealtime;
+    private long permissionShownRealtime;
+
+    @Override
+    public void load() {
+        ScreenRecordService.setEventListener((event, data) -> {
+            try {
+                notifyListeners(event, JSObject.fromJSONObject(data));
+            } catch (JSONException e) {
+                Log.e(TAG, "Error forwarding " + event, e);
+            }
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        ScreenRecordService.setEventListener(null);
+        RecordingPrewarm.discard();
+        closeChunkReader();
+        super.handleOnDestroy();
+    }
 
     @PluginMethod
     public void checkOverlayPermission(PluginCall call) {
@@ -68,16 +108,38 @@ public class ScreenRecorderPlugin extends Plugin {
 
     @PluginMethod
     public void startRecording(PluginCall call) {
+        requestedRealtime = SystemClock.elapsedRealtime();
+
+        try {
+            // Fail before the permission dialog rather than after it
+            PreparedRecorder.requireBudget(getRecordsDirectory());
+        } catch (IOException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+
         saveCall(call);
 
         try {
+            // Settle the name now so a prewarmed recorder and the service agree on it
+            pendingFileName = call.getString("fileName", generateFileName());
+            if (call.getBoolean("prewarm", true) && !ScreenRecordService.isRecordingActive()) {
+                RecordingPrewarm.start(getContext(), getRecordsDirectory(), pendingFileName,
+                        call.getBoolean("encrypt", false), getLiveStreamUrl(call) != null);
+            }
+
             android.media.projection.MediaProjectionManager projectionManager =
                     (android.media.projection.MediaProjectionManager)
                             getContext().getSystemService(Activity.MEDIA_PROJECTION_SERVICE);
 
             Intent captureIntent = projectionManager.createScreenCaptureIntent();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(StartupTimings.TRACE_PREFIX + "permissionDialog", PERMISSION_TRACE_COOKIE);
+            }
             startActivityForResult(call, captureIntent, SCREEN_CAPTURE_REQUEST_CODE);
+            permissionShownRealtime = SystemClock.elapsedRealtime();
         } catch (Exception e) {
+            RecordingPrewarm.discard();
             Log.e(TAG, "Error starting screen capture intent", e);
             call.reject("Failed to start screen recording: " + e.getMessage());
         }
@@ -104,59 +166,62 @@ public class ScreenRecorderPlugin extends Plugin {
     }
 
     @PluginMethod
-    public void listRecordings(PluginCall call) {
+    public void addMarker(PluginCall call) {
+        if (!ScreenRecordService.isRecordingActive()) {
+            call.reject("No recording in progress");
+            return;
+        }
+
         try {
-            File recordsDir = getRecordsDirectory();
-            JSArray recordings = new JSArray();
+            String label = call.getString("label", "marker");
 
-            if (recordsDir.exists() && recordsDir.isDirectory()) {
-                File[] files = recordsDir.listFiles((dir, name) ->
-                        name.endsWith(".mp4") || name.equals("recordings_metadata.json")
-                );
-
-                // Try to read metadata first
-                File metaFile = new File(recordsDir, "recordings_metadata.json");
-                if (metaFile.exists()) {
-                    try {
-                        String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-                        JSONArray metadataArray = new JSONArray(content);
-
-                        for (int i = 0; i < metadataArray.length(); i++) {
-                            JSONObject meta = metadataArray.getJSONObject(i);
-                            File videoFile = new File(meta.getString("path"));
-
-                            if (videoFile.exists()) {
-                                JSObject recording = new JSObject();
-                                recording.put("path", videoFile.getAbsolutePath());
-                                recording.put("name", videoFile.getName());
-                                recording.put("size", videoFile.length());
-                                recording.put("created", meta.optLong("created", videoFile.lastModified()));
-                                recording.put("duration", meta.optLong("duration", 0));
-
-                                recordings.put(recording);
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error reading metadata", e);
-                    }
-                }
+            Intent intent = new Intent(getContext(), ScreenRecordService.class);
+            intent.setAction(ScreenRecordService.ACTION_ADD_MARKER);
+            intent.putExtra(ScreenRecordService.EXTRA_MARKER_LABEL, label);
+            getContext().startService(intent);
 
-                // Fallback to scanning directory
-                if (recordings.length() == 0) {
-                    for (File file : files) {
-                        if (file.getName().endsWith(".mp4")) {
-                            JSObject recording = new JSObject();
-                            recording.put("path", file.getAbsolutePath());
-                            recording.put("name", file.getName());
-                            recording.put("size", file.length());
-                            recording.put("created", file.lastModified());
-                            recording.put("duration", 0);
-
-                            recordings.put(recording);
-                        }
-                    }
-                }
-            }
+            JSObject result = new JSObject();
+            result.put("label", label);
+            call.resolve(result);
+        } catch (Exception e) {
+            Log.e(TAG, "Error adding marker", e);
+            call.reject("Failed to add marker: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hands the running recording fresh request headers, so a live stream or telemetry upload
+     * outlasting the auth token it started with keeps going.
+     */
+    @PluginMethod
+    public void updateRequestHeaders(PluginCall call) {
+        JSObject headers = call.getObject("headers");
+        if (headers == null) {
+            call.reject("headers is required");
+            return;
+        }
+        if (!ScreenRecordService.isRecordingActive()) {
+            call.resolve();
+            return;
+        }
+
+        try {
+            Intent intent = new Intent(getContext(), ScreenRecordService.class);
+            intent.setAction(ScreenRecordService.ACTION_UPDATE_HEADERS);
+            intent.putExtra(ScreenRecordService.EXTRA_REQUEST_HEADERS, headers.toString());
+            getContext().startService(intent);
+            call.resolve();
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating request headers", e);
+            call.reject("Failed to update request headers: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void listRecordings(PluginCall call) {
+        try {
+            // Reads the metadata index first and falls back to scanning the directory
+            JSONArray recordings = getLibrary().listRecordings();
 
             JSObject result = new JSObject();
             result.put("recordings", recordings);
@@ -179,7 +244,8 @@ public class ScreenRecorderPlugin extends Plugin {
 
             File file = new File(filePath);
             if (file.exists()) {
-                boolean deleted = file.delete();
+                closeChunkReader();
+                boolean deleted = RecordingFiles.deleteWithCompanions(file);
 
                 if (deleted) {
                     // Remove from metadata
@@ -215,22 +281,17 @@ public class ScreenRecorderPlugin extends Plugin {
                 info.put("size", file.length());
                 info.put("created", file.lastModified());
                 info.put("exists", true);
+                info.put("encrypted", RecordingFiles.isEncrypted(file));
 
                 // Try to get more info from metadata
-                File metaFile = new File(getRecordsDirectory(), "recordings_metadata.json");
-                if (metaFile.exists()) {
-                    String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-                    JSONArray metadataArray = new JSONArray(content);
-
-                    for (int i = 0; i < metadataArray.length(); i++) {
-                        JSONObject meta = metadataArray.getJSONObject(i);
-                        if (meta.getString("path").equals(filePath)) {
-                            info.put("duration", meta.optLong("duration", 0));
-                            break;
-                        }
-                    }
+                JSONObject meta = getLibrary().findEntry(filePath);
+                if (meta != null) {
+                    info.put("duration", meta.optLong("duration", 0));
                 }
 
+                info.put("markers", new JSArray(RecordingMarkers.read(file).toString()));
+                info.put("evidenceStills", new JSArray(EvidenceStills.list(file).toArray()));
+
                 call.resolve(info);
             } else {
                 call.reject("File not found");
@@ -250,19 +311,8 @@ public class ScreenRecorderPlugin extends Plugin {
             List<String> deletedFiles = new ArrayList<>();
 
             if (recordsDir.exists() && recordsDir.isDirectory()) {
-                File[] files = recordsDir.listFiles((dir, name) -> name.endsWith(".mp4"));
-                long cutoffTime = System.currentTimeMillis() - (days * 24 * 60 * 60 * 1000L);
-
-                for (File file : files) {
-                    if (file.lastModified() < cutoffTime) {
-                        if (file.delete()) {
-                            deletedFiles.add(file.getName());
-                        }
-                    }
-                }
-
-                // Clean up metadata
-                cleanupMetadataFile();
+                // Also prunes the metadata index
+                deletedFiles = getLibrary().deleteOlderThan(days, System.currentTimeMillis());
             }
 
             JSObject result = new JSObject();
@@ -298,12 +348,27 @@ public class ScreenRecorderPlugin extends Plugin {
                 otarenaDir.mkdirs();
             }
 
-            File destFile = new File(otarenaDir, sourceFile.getName());
+            File destFile;
+            if (RecordingFiles.isEncrypted(sourceFile)) {
+                // Exports are meant to be shared, so they are written decrypted
+                destFile = new File(otarenaDir, EncryptedRecordings.plaintextNameFor(sourceFile));
+                try (ChunkedGcmReader reader = EncryptedRecordings.openReader(sourceFile);
+                     InputStream source = reader.openStream();
+                     OutputStream destination = new FileOutputStream(destFile)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int n;
+                    while ((n = source.read(buffer)) != -1) {
+                        destination.write(buffer, 0, n);
+                    }
+                }
+            } else {
+                destFile = new File(otarenaDir, sourceFile.getName());
 
-            // Copy file
-            try (FileChannel source = new FileInputStream(sourceFile).getChannel();
-                 FileChannel destination = new FileOutputStream(destFile).getChannel()) {
-                destination.transferFrom(source, 0, source.size());
+                // Copy file
+                try (FileChannel source = new FileInputStream(sourceFile).getChannel();
+                     FileChannel destination = new FileOutputStream(destFile).getChannel()) {
+                    destination.transferFrom(source, 0, source.size());
+                }
             }
 
             // Scan file to make it visible in gallery
@@ -324,56 +389,180 @@ public class ScreenRecorderPlugin extends Plugin {
         }
     }
 
-    private File getRecordsDirectory() {
-        return new File(getContext().getExternalFilesDir(Environment.DIRECTORY_MOVIES), "OTArena_Recordings");
+    /**
+     * Reads a byte range of a recording as base64, decrypting encrypted recordings on the fly.
+     * Used by uploads so the plaintext never has to be written out in full.
+     */
+    @PluginMethod
+    public void readRecordingChunk(PluginCall call) {
+        try {
+            String filePath = call.getString("path");
+            if (filePath == null) {
+                call.reject("File path is required");
+                return;
+            }
+
+            File file = new File(filePath);
+            if (!file.exists()) {
+                call.reject("File not found");
+                return;
+            }
+
+            long offset = call.getLong("offset", 0L);
+            int length = Math.min(call.getInt("length", MAX_READ_CHUNK), MAX_READ_CHUNK);
+            byte[] buffer = new byte[length];
+            int read;
+            long totalLength;
+
+            if (RecordingFiles.isEncrypted(file)) {
+                ChunkedGcmReader reader = chunkReaderFor(file);
+                totalLength = reader.length();
+                read = reader.read(offset, buffer, 0, length);
+                if (read <= 0 || offset + read >= totalLength) {
+                    closeChunkReader();
+                }
+            } else {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                    totalLength = raf.length();
+                    raf.seek(offset);
+                    read = raf.read(buffer, 0, length);
+                }
+            }
+
+            JSObject result = new JSObject();
+            result.put("data", read > 0 ? Base64.encodeToString(buffer, 0, read, Base64.NO_WRAP) : "");
+            result.put("bytesRead", Math.max(read, 0));
+            result.put("totalLength", totalLength);
+            call.resolve(result);
+
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading recording chunk", e);
+            closeChunkReader();
+            call.reject("Failed to read recording: " + e.getMessage());
+        }
     }
 
-    private void removeFromMetadata(String filePath) {
+    private synchronized ChunkedGcmReader chunkReaderFor(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        if (chunkReader == null || !path.equals(chunkReaderPath)) {
+            closeChunkReader();
+            chunkReader = EncryptedRecordings.openReader(file);
+            chunkReaderPath = path;
+        }
+        return chunkReader;
+    }
+
+    private synchronized void closeChunkReader() {
+        if (chunkReader == null) return;
+
         try {
-            File metaFile = new File(getRecordsDirectory(), "recordings_metadata.json");
-            if (metaFile.exists()) {
-                String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-                JSONArray metadataArray = new JSONArray(content);
-                JSONArray newArray = new JSONArray();
-
-                for (int i = 0; i < metadataArray.length(); i++) {
-                    JSONObject meta = metadataArray.getJSONObject(i);
-                    if (!meta.getString("path").equals(filePath)) {
-                        newArray.put(meta);
+            chunkReader.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing recording reader", e);
+        }
+        chunkReader = null;
+        chunkReaderPath = null;
+    }
+
+    /**
+     * SHA-256 of a recording's plaintext, as lowercase hex. Uploads use it to ask the backend
+     * whether the same evidence is already stored. The result is cached in the metadata index
+     * until the file changes.
+     */
+    @PluginMethod
+    public void hashRecording(PluginCall call) {
+        try {
+            String filePath = call.getString("path");
+            if (filePath == null) {
+                call.reject("File path is required");
+                return;
+            }
+
+            File file = new File(filePath);
+            if (!file.exists()) {
+                call.reject("File not found");
+                return;
+            }
+
+            RecordingLibrary library = getLibrary();
+            JSONObject meta = library.findEntry(filePath);
+            String sha256 = null;
+            if (meta != null && meta.optLong("sha256Modified", -1) == file.lastModified()) {
+                sha256 = meta.optString("sha256", null);
+            }
+
+            if (sha256 == null) {
+                if (RecordingFiles.isEncrypted(file)) {
+                    try (ChunkedGcmReader reader = EncryptedRecordings.openReader(file);
+                         InputStream source = reader.openStream()) {
+                        sha256 = sha256Hex(source);
+                    }
+                } else {
+                    try (InputStream source = new FileInputStream(file)) {
+                        sha256 = sha256Hex(source);
                     }
                 }
 
-                FileOutputStream fos = new FileOutputStream(metaFile);
-                fos.write(newArray.toString(2).getBytes());
-                fos.close();
+                if (meta != null) {
+                    JSONObject fields = new JSONObject();
+                    fields.put("sha256", sha256);
+                    fields.put("sha256Modified", file.lastModified());
+                    library.updateEntry(filePath, fields);
+                }
             }
+
+            JSObject result = new JSObject();
+            result.put("sha256", sha256);
+            call.resolve(result);
+
         } catch (Exception e) {
-            Log.e(TAG, "Error removing from metadata", e);
+            Log.e(TAG, "Error hashing recording", e);
+            call.reject("Failed to hash recording: " + e.getMessage());
         }
     }
 
-    private void cleanupMetadataFile() {
+    private static String sha256Hex(InputStream source) throws IOException {
+        MessageDigest digest;
         try {
-            File metaFile = new File(getRecordsDirectory(), "recordings_metadata.json");
-            if (metaFile.exists()) {
-                String content = new java.util.Scanner(metaFile).useDelimiter("\\A").next();
-                JSONArray metadataArray = new JSONArray(content);
-                JSONArray newArray = new JSONArray();
-
-                for (int i = 0; i < metadataArray.length(); i++) {
-                    JSONObject meta = metadataArray.getJSONObject(i);
-                    File file = new File(meta.getString("path"));
-                    if (file.exists()) {
-                        newArray.put(meta);
-                    }
-                }
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
 
-                FileOutputStream fos = new FileOutputStream(metaFile);
-                fos.write(newArray.toString(2).getBytes());
-                fos.close();
-            }
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = source.read(buffer)) != -1) {
+            digest.update(buffer, 0, n);
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format(Locale.US, "%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private File getRecordsDirectory() {
+        return ScreenRecordService.getRecordsDirectory(getContext());
+    }
+
+    /**
+     * Ingest URL from the {@code liveStream} option, or null when not streaming.
+     */
+    private String getLiveStreamUrl(PluginCall call) {
+        JSObject liveStream = call.getObject("liveStream");
+        return liveStream != null ? liveStream.getString("url") : null;
+    }
+
+    private RecordingLibrary getLibrary() {
+        return new RecordingLibrary(getRecordsDirectory());
+    }
+
+    private void removeFromMetadata(String filePath) {
+        try {
+            getLibrary().removeEntry(filePath);
         } catch (Exception e) {
-            Log.e(TAG, "Error cleaning up metadata", e);
+            Log.e(TAG, "Error removing from metadata", e);
         }
     }
 
@@ -394,9 +583,28 @@ public class ScreenRecorderPlugin extends Plugin {
     }
 
     private void handleScreenCaptureResult(int resultCode, Intent data, PluginCall savedCall) {
+        long grantedRealtime = SystemClock.elapsedRealtime();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(StartupTimings.TRACE_PREFIX + "permissionDialog", PERMISSION_TRACE_COOKIE);
+        }
+
+        String requestedFileName = pendingFileName;
+        pendingFileName = null;
+
         if (resultCode == Activity.RESULT_OK && data != null) {
-            String fileName = savedCall.getString("fileName", generateFileName());
+            String fileName = requestedFileName != null ? requestedFileName : savedCall.getString("fileName", generateFileName());
             int autoCleanupDays = savedCall.getInt("autoCleanupDays", 7);
+            int sampleFps = savedCall.getInt("sampleFps", 0);
+            boolean encrypt = savedCall.getBoolean("encrypt", false);
+            String[] scoreScreenTemplates = null;
+            try {
+                JSArray templates = savedCall.getArray("scoreScreenTemplates");
+                if (templates != null) {
+                    scoreScreenTemplates = templates.<String>toList().toArray(new String[0]);
+                }
+            } catch (JSONException e) {
+                Log.w(TAG, "Ignoring invalid scoreScreenTemplates", e);
+            }
 
             try {
                 Intent serviceIntent = new Intent(getContext(), ScreenRecordService.class);
@@ -404,6 +612,26 @@ public class ScreenRecorderPlugin extends Plugin {
                 serviceIntent.putExtra(ScreenRecordService.EXTRA_DATA, data);
                 serviceIntent.putExtra(ScreenRecordService.EXTRA_FILE_NAME, fileName);
                 serviceIntent.putExtra(ScreenRecordService.EXTRA_AUTO_CLEANUP_DAYS, autoCleanupDays);
+                serviceIntent.putExtra(ScreenRecordService.EXTRA_SAMPLE_FPS, sampleFps);
+                serviceIntent.putExtra(ScreenRecordService.EXTRA_ENCRYPT, encrypt);
+                serviceIntent.putExtra(ScreenRecordService.EXTRA_SCORE_TEMPLATES, scoreScreenTemplates);
+                serviceIntent.putExtra(ScreenRecordService.EXTRA_REQUESTED_AT, requestedRealtime);
+                serviceIntent.putExtra(ScreenRecordService.EXTRA_PERMISSION_SHOWN_AT, permissionShownRealtime);
+                serviceIntent.putExtra(ScreenRecordService.EXTRA_GRANTED_AT, grantedRealtime);
+                String liveStreamUrl = getLiveStreamUrl(savedCall);
+                if (liveStreamUrl != null) {
+                    JSONObject headers = savedCall.getObject("liveStream").optJSONObject("headers");
+                    serviceIntent.putExtra(ScreenRecordService.EXTRA_STREAM_URL, liveStreamUrl);
+                    serviceIntent.putExtra(ScreenRecordService.EXTRA_STREAM_HEADERS,
+                            headers != null ? headers.toString() : null);
+                }
+                JSObject telemetry = savedCall.getObject("telemetry");
+                if (telemetry != null && telemetry.getString("url") != null) {
+                    JSONObject headers = telemetry.optJSONObject("headers");
+                    serviceIntent.putExtra(ScreenRecordService.EXTRA_TELEMETRY_URL, telemetry.getString("url"));
+                    serviceIntent.putExtra(ScreenRecordService.EXTRA_TELEMETRY_HEADERS,
+                            headers != null ? headers.toString() : null);
+                }
 
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                     getContext().startForegroundService(serviceIntent);
@@ -414,10 +642,12 @@ public class ScreenRecorderPlugin extends Plugin {
                 Log.d(TAG, "Screen recording service starting...");
                 savedCall.resolve();
             } catch (Exception e) {
+                RecordingPrewarm.discard();
                 Log.e(TAG, "Failed to start service", e);
                 savedCall.reject("Failed to start screen recording service: " + e.getMessage());
             }
         } else {
+            RecordingPrewarm.discard();
             savedCall.reject("User denied screen capture permission");
         }
     }
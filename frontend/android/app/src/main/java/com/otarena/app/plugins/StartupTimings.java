@@ -0,0 +1,57 @@
+package com.otarena.app.plugins;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Times the phases between "record" being tapped and the first frame reaching the encoder.
+ * Each phase is also a systrace/Perfetto section named "OTArena:<phase>".
+ *
+ * Phases spanning components (the permission dialog, the service start) are measured from
+ * elapsedRealtime stamps passed along in the start intent.
+ */
+public class StartupTimings {
+
+    public static final String TRACE_PREFIX = "OTArena:";
+    public static final long TARGET_GRANT_TO_FIRST_FRAME_MS = 300;
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private String openPhase;
+    private long openedAt;
+
+    public void begin(String phase) {
+        openPhase = phase;
+        openedAt = SystemClock.elapsedRealtime();
+        Trace.beginSection(TRACE_PREFIX + phase);
+    }
+
+    public void end() {
+        if (openPhase == null) return;
+        Trace.endSection();
+        phases.put(openPhase, SystemClock.elapsedRealtime() - openedAt);
+        openPhase = null;
+    }
+
+    /**
+     * Records a phase between two elapsedRealtime stamps; ignored if either is missing.
+     */
+    public void put(String phase, long startRealtime, long endRealtime) {
+        if (startRealtime > 0 && endRealtime >= startRealtime) {
+            phases.put(phase, endRealtime - startRealtime);
+        }
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            json.put(phase.getKey(), phase.getValue());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,63 @@
+package com.otarena.app.plugins;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+/**
+ * Runs the score-screen detector against fixture frames in src/test/resources/frames.
+ */
+public class ScoreScreenDetectorTest {
+
+    private static SampledFrame loadFrame(String name) throws Exception {
+        try (InputStream in = ScoreScreenDetectorTest.class.getResourceAsStream("/frames/" + name)) {
+            assertNotNull("Missing fixture " + name, in);
+            BufferedImage image = ImageIO.read(in);
+            int width = image.getWidth();
+            int height = image.getHeight();
+            int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+            return new SampledFrame(width, height, argb, 0);
+        }
+    }
+
+    private static ScoreScreenDetector detectorFor(String templateFixture) throws Exception {
+        long template = ScoreScreenDetector.hash(loadFrame(templateFixture));
+        return ScoreScreenDetector.fromHexTemplates(
+                Collections.singletonList(ScoreScreenDetector.toHex(template)),
+                ScoreScreenDetector.DEFAULT_MAX_DISTANCE);
+    }
+
+    @Test
+    public void matchesTemplateFrame() throws Exception {
+        assertTrue(detectorFor("score_screen.png").matches(loadFrame("score_screen.png")));
+    }
+
+    @Test
+    public void matchesScoreScreenAtOtherResolutionWithNoise() throws Exception {
+        assertTrue(detectorFor("score_screen.png").matches(loadFrame("score_screen_variant.png")));
+    }
+
+    @Test
+    public void ignoresGameplayFrame() throws Exception {
+        assertFalse(detectorFor("score_screen.png").matches(loadFrame("gameplay.png")));
+    }
+
+    @Test
+    public void hexRoundTripKeepsHighBit() {
+        long hash = 0x8000000000000001L;
+        String hex = ScoreScreenDetector.toHex(hash);
+        assertEquals("8000000000000001", hex);
+        assertEquals(hash, Long.parseUnsignedLong(hex, 16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMismatchedPixelCount() {
+        new SampledFrame(4, 4, new int[15], 0);
+    }
+}
@@ -0,0 +1,122 @@
+package com.otarena.app.recording;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Listing, metadata rewrites and cleanup against synthetic libraries of 10, 1k and 10k
+ * recordings. Nothing is old enough to be deleted, so every iteration measures the full
+ * scan and index rewrite that the app pays on each call. The read benchmarks drop the
+ * cached index first, so they measure reading and parsing it from disk.
+ */
+@State(Scope.Thread)
+public class RecordingLibraryBenchmark {
+
+    @Param({ "10", "1000", "10000" })
+    public int recordings;
+
+    private File recordsDir;
+    private RecordingLibrary library;
+    private JSONArray metadataSnapshot;
+    private String middlePath;
+
+    @Setup(Level.Trial)
+    public void createLibrary() throws Exception {
+        recordsDir = Files.createTempDirectory("otarena-bench").toFile();
+        library = new RecordingLibrary(recordsDir);
+
+        long now = System.currentTimeMillis();
+        JSONArray entries = new JSONArray();
+        for (int i = 0; i < recordings; i++) {
+            File file = new File(recordsDir, String.format("match_%d_%d.mp4", i, now - i * 60_000L));
+            file.createNewFile();
+
+            JSONObject entry = new JSONObject();
+            entry.put("path", file.getAbsolutePath());
+            entry.put("name", file.getName());
+            entry.put("size", 0);
+            entry.put("created", now - i * 60_000L);
+            entry.put("duration", 0);
+            entry.put("encrypted", false);
+            entries.put(entry);
+
+            if (i == recordings / 2) {
+                middlePath = file.getAbsolutePath();
+            }
+        }
+        library.writeMetadata(entries);
+        metadataSnapshot = entries;
+    }
+
+    /**
+     * Used by benchmarks that shrink the index, to put it back before the next call. Kept
+     * out of the read-only benchmarks so they are not charged for the extra write. Goes
+     * through the library because the index is cached in memory.
+     */
+    @State(Scope.Thread)
+    public static class RestoredMetadata {
+        @Setup(Level.Invocation)
+        public void restore(RecordingLibraryBenchmark benchmark) throws Exception {
+            benchmark.library.writeMetadata(benchmark.metadataSnapshot);
+        }
+    }
+
+    /**
+     * Used by the read benchmarks so each call loads the index from disk, as the first read
+     * after the app starts does, instead of copying the snapshot cached by the last call.
+     */
+    @State(Scope.Thread)
+    public static class ColdIndex {
+        @Setup(Level.Invocation)
+        public void invalidate(RecordingLibraryBenchmark benchmark) {
+            MetadataStore.forFile(benchmark.library.getMetadataFile()).invalidate();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLibrary() {
+        File[] files = recordsDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        recordsDir.delete();
+    }
+
+    @Benchmark
+    public JSONArray listRecordings(ColdIndex cold) throws Exception {
+        return library.listRecordings();
+    }
+
+    @Benchmark
+    public JSONObject findEntry(ColdIndex cold) throws Exception {
+        return library.findEntry(middlePath);
+    }
+
+    @Benchmark
+    public void removeFromMetadata(RestoredMetadata restored) throws Exception {
+        library.removeEntry(middlePath);
+    }
+
+    @Benchmark
+    public void cleanupMetadataFile() throws Exception {
+        library.pruneMissingEntries();
+    }
+
+    @Benchmark
+    public List<String> performAutoCleanup() throws Exception {
+        return library.deleteOlderThan(7, System.currentTimeMillis());
+    }
+}
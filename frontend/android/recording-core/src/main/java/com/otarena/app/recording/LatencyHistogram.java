@@ -0,0 +1,55 @@
+package com.otarena.app.recording;
+
+/**
+ * Fixed-size latency histogram with 0.1 ms buckets up to 100 ms. Recording is allocation
+ * free, so it can sit on per-frame and per-write paths; percentiles are read at the end of
+ * a session.
+ */
+public class LatencyHistogram {
+
+    private static final long BUCKET_NANOS = 100_000;
+    private static final int BUCKETS = 1000;
+
+    private final int[] counts = new int[BUCKETS + 1];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    public synchronized void record(long nanos) {
+        if (nanos < 0) return;
+        counts[(int) Math.min(nanos / BUCKET_NANOS, BUCKETS)]++;
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMs() {
+        return count > 0 ? totalNanos / 1e6 / count : 0;
+    }
+
+    public synchronized double getMaxMs() {
+        return maxNanos / 1e6;
+    }
+
+    /**
+     * Upper edge of the bucket holding the given percentile (0-100), or the maximum when it
+     * falls beyond the last bucket.
+     */
+    public synchronized double getPercentileMs(double percentile) {
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min((i + 1) * BUCKET_NANOS, maxNanos) / 1e6;
+            }
+        }
+        return maxNanos / 1e6;
+    }
+}
@@ -0,0 +1,251 @@
+package com.otarena.app.recording;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sends spooled live segments to the ingest endpoint, one at a time and in order:
+ * {@code PUT <base>/segments/<sequence>} with the raw TS bytes, then
+ * {@code POST <base>/complete} once the spool is drained.
+ *
+ * Requests reuse one keep-alive connection. Only one segment is in flight, so a slow
+ * server holds segments back in the spool rather than in memory. 429 and 503 responses
+ * are honored via Retry-After, and network errors back off exponentially. A 401 waits for
+ * the app to hand over fresh headers ({@link #setHeaders}) and retries with them; any other
+ * client error (match closed, quota used up) ends the stream.
+ */
+public class LiveSegmentUploader {
+
+    public static final String CONTENT_TYPE = "video/mp2t";
+
+    private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+    private static final int READ_TIMEOUT_MS = 30 * 1000;
+    private static final long POLL_MS = 1000;
+    private static final long MIN_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 10 * 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long AUTH_REFRESH_WAIT_MS = 60 * 1000;
+
+    private final SegmentSpool spool;
+    private final String baseUrl;
+    private volatile Map<String, String> headers;
+    private volatile int headersVersion = 0;
+    private Thread thread;
+    private volatile boolean stopped = false;
+
+    private volatile int segmentsSent = 0;
+    private volatile long bytesSent = 0;
+    private volatile int retries = 0;
+    private volatile boolean completed = false;
+    private volatile String failure;
+    private long lastRetryAfterMs;
+
+    public LiveSegmentUploader(SegmentSpool spool, String baseUrl, Map<String, String> headers) {
+        this.spool = spool;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+    }
+
+    /**
+     * Replaces the request headers, e.g. with a refreshed auth token. Requests already in
+     * flight keep the old ones.
+     */
+    public synchronized void setHeaders(Map<String, String> headers) {
+        this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        headersVersion++;
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "LiveSegmentUploader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the remaining segments to be sent after the spool has
+     * been closed, then gives up on whatever is left. Returns true if the stream completed.
+     */
+    public boolean finish(long timeoutMs) throws InterruptedException {
+        if (thread == null) return false;
+        thread.join(timeoutMs);
+        if (thread.isAlive()) {
+            stopped = true;
+            thread.interrupt();
+            thread.join();
+        }
+        return completed;
+    }
+
+    public int getSegmentsSent() {
+        return segmentsSent;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Why the stream ended early, or null.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    private void run() {
+        long backoffMs = MIN_BACKOFF_MS;
+        try {
+            while (!stopped) {
+                SegmentSpool.Segment segment = spool.awaitNext(POLL_MS);
+                if (segment == null) {
+                    if (spool.isDrained()) break;
+                    continue;
+                }
+
+                long retryAfterMs;
+                try {
+                    int sentWith = headersVersion;
+                    int status = send("PUT", "/segments/" + segment.getSequence(), segment);
+                    if (status == HttpURLConnection.HTTP_UNAUTHORIZED && awaitHeadersAfter(sentWith)) {
+                        retries++;
+                        continue;
+                    }
+                    if (isSuccess(status) || status == HttpURLConnection.HTTP_CONFLICT) {
+                        // 409: the server already has this sequence from an earlier attempt
+                        spool.remove(segment);
+                        segmentsSent++;
+                        bytesSent += segment.getLength();
+                        backoffMs = MIN_BACKOFF_MS;
+                        continue;
+                    }
+                    if (status == 429 || status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                        retryAfterMs = Math.max(lastRetryAfterMs, MIN_BACKOFF_MS);
+                    } else {
+                        failure = "HTTP " + status;
+                        return;
+                    }
+                } catch (IOException e) {
+                    retryAfterMs = backoffMs;
+                    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+                }
+
+                retries++;
+                Thread.sleep(retryAfterMs);
+            }
+
+            if (spool.isDrained()) {
+                String body = "{\"lastSequence\":" + spool.getLastSequence()
+                        + ",\"droppedSegments\":" + spool.getDroppedSegments() + "}";
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                int sentWith = headersVersion;
+                int status = send("POST", "/complete", bytes);
+                if (status == HttpURLConnection.HTTP_UNAUTHORIZED && awaitHeadersAfter(sentWith)) {
+                    status = send("POST", "/complete", bytes);
+                }
+                if (isSuccess(status)) {
+                    completed = true;
+                } else {
+                    failure = "HTTP " + status + " completing stream";
+                }
+            }
+        } catch (InterruptedException e) {
+            failure = "Timed out with " + spool.getQueuedBytes() + " bytes unsent";
+        } catch (IOException e) {
+            failure = e.getMessage();
+        }
+    }
+
+    /**
+     * Waits for headers newer than {@code version}. Returns false if none arrive in time.
+     */
+    private boolean awaitHeadersAfter(int version) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + AUTH_REFRESH_WAIT_MS;
+        while (headersVersion == version && !stopped && System.currentTimeMillis() < deadline) {
+            Thread.sleep(POLL_MS);
+        }
+        return headersVersion != version;
+    }
+
+    private int send(String method, String path, SegmentSpool.Segment segment) throws IOException {
+        HttpURLConnection connection = open(method, path, CONTENT_TYPE);
+        connection.setFixedLengthStreamingMode(segment.getLength());
+        try (InputStream in = new FileInputStream(segment.getFile());
+             OutputStream out = connection.getOutputStream()) {
+            copy(in, out);
+        }
+        return readStatus(connection);
+    }
+
+    private int send(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = open(method, path, "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        return readStatus(connection);
+    }
+
+    private HttpURLConnection open(String method, String path, String contentType) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(baseUrl + path).toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Content-Type", contentType);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        return connection;
+    }
+
+    /**
+     * Reads the status and drains the body so the connection goes back to the keep-alive pool.
+     */
+    private int readStatus(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        lastRetryAfterMs = parseRetryAfterMs(connection.getHeaderField("Retry-After"));
+        InputStream body = isSuccess(status) ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                copy(in, null);
+            }
+        }
+        return status;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (out != null) out.write(buffer, 0, n);
+        }
+    }
+
+    private static long parseRetryAfterMs(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+}
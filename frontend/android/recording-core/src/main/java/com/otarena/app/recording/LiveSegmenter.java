@@ -0,0 +1,84 @@
+package com.otarena.app.recording;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongSupplier;
+
+/**
+ * Cuts a live MPEG-2 TS byte stream into short segments for {@link SegmentSpool}.
+ *
+ * Segments end on 188 byte packet boundaries and are meant to be played back concatenated
+ * in sequence order, so they don't need to start on a keyframe. A segment is cut once it
+ * spans {@code segmentDurationMs} or reaches {@code maxSegmentBytes}, whichever is first.
+ */
+public class LiveSegmenter extends OutputStream {
+
+    public static final int TS_PACKET_SIZE = 188;
+
+    private final SegmentSpool spool;
+    private final long segmentDurationMs;
+    private final LongSupplier clockMs;
+    private final byte[] buffer;
+    private int size = 0;
+    private long segmentStartMs = -1;
+    private boolean closed = false;
+
+    public LiveSegmenter(SegmentSpool spool, long segmentDurationMs, int maxSegmentBytes, LongSupplier clockMs) {
+        this.spool = spool;
+        this.segmentDurationMs = segmentDurationMs;
+        this.clockMs = clockMs;
+        this.buffer = new byte[maxSegmentBytes - maxSegmentBytes % TS_PACKET_SIZE];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Segmenter closed");
+        if (segmentStartMs < 0) {
+            segmentStartMs = clockMs.getAsLong();
+        }
+
+        while (len > 0) {
+            int n = Math.min(len, buffer.length - size);
+            System.arraycopy(b, off, buffer, size, n);
+            size += n;
+            off += n;
+            len -= n;
+
+            if (size == buffer.length) {
+                cut(size);
+            }
+        }
+
+        if (clockMs.getAsLong() - segmentStartMs >= segmentDurationMs) {
+            cut(size - size % TS_PACKET_SIZE);
+        }
+    }
+
+    private void cut(int length) throws IOException {
+        if (length == 0) return;
+
+        spool.append(buffer, 0, length);
+        System.arraycopy(buffer, length, buffer, 0, size - length);
+        size -= length;
+        segmentStartMs = clockMs.getAsLong();
+    }
+
+    /**
+     * Emits whatever is buffered as the final segment and closes the spool.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            cut(size);
+        } finally {
+            spool.close();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.otarena.app.recording;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * The recordings metadata index on disk, shared by everything in the process that touches it.
+ *
+ * There is one store per index file, so the service and the plugin coordinate even though
+ * each builds its own {@link RecordingLibrary}. Readers get a copy of the last committed
+ * snapshot and never wait; writers are serialized per file, apply their change to a fresh
+ * copy and commit it by writing a temp file and renaming it over the index. A crash leaves
+ * either the old or the new index, never a truncated one.
+ *
+ * The file is still JSON, {@code {"crc32":"<hex>","entries":[...]}}, with the checksum taken
+ * over the exact bytes of the entries array. An index that fails the check is moved aside
+ * as "*.corrupt" and rebuilt from the recordings in its directory, so later updates don't
+ * drop recordings the lost index used to list. Plain arrays written by older versions are
+ * accepted without a check.
+ *
+ * Stores are never evicted and each caches its snapshot for the life of the process. That
+ * costs one small object per index file, and the app has a single recordings directory. The
+ * cache is only valid while every write in the process goes through the store; anything
+ * else that changes the file must call {@link #invalidate()}.
+ */
+public final class MetadataStore {
+
+    public interface Mutation {
+        /**
+         * Changes {@code entries} in place. Returns false to skip the commit.
+         */
+        boolean apply(JSONArray entries) throws JSONException;
+    }
+
+    // Keyed by normalized absolute path; entries live as long as the process
+    private static final ConcurrentHashMap<String, MetadataStore> STORES = new ConcurrentHashMap<>();
+
+    private static final String PREFIX = "{\"crc32\":\"";
+    private static final String ENTRIES_KEY = "\",\"entries\":";
+    private static final int CRC_HEX_LENGTH = 8;
+
+    private final File file;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile String snapshot;
+
+    private MetadataStore(File file) {
+        this.file = file;
+    }
+
+    public static MetadataStore forFile(File file) {
+        String key = file.getAbsoluteFile().toPath().normalize().toString();
+        return STORES.computeIfAbsent(key, k -> new MetadataStore(new File(k)));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns a copy of the committed entries. Only the very first read of a store waits, for
+     * the index to be loaded; after that reads never wait for writers.
+     */
+    public JSONArray read() throws IOException, JSONException {
+        String entries = snapshot;
+        if (entries == null) {
+            entries = loadOnce();
+        }
+        return new JSONArray(entries);
+    }
+
+    /**
+     * Applies {@code mutation} to the current entries and commits the result. Concurrent
+     * updates run one after another, each seeing the previous one's result.
+     */
+    public void update(Mutation mutation) throws IOException, JSONException {
+        writeLock.lock();
+        try {
+            JSONArray entries = new JSONArray(snapshot != null ? snapshot : loadOnce());
+            if (mutation.apply(entries)) {
+                commit(entries.toString());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces all entries.
+     */
+    public void replace(JSONArray entries) throws IOException {
+        writeLock.lock();
+        try {
+            commit(entries.toString());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the cached snapshot so the next read loads the index from disk again. Only needed
+     * when something outside this store has changed the file.
+     */
+    public void invalidate() {
+        writeLock.lock();
+        try {
+            snapshot = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private String loadOnce() throws IOException {
+        writeLock.lock();
+        try {
+            if (snapshot == null) {
+                snapshot = load();
+            }
+            return snapshot;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private String load() throws IOException {
+        if (!file.exists()) return "[]";
+
+        String content = readFile(file).trim();
+        if (content.isEmpty()) return "[]";
+
+        String entries = content.startsWith("[") ? content : verified(content);
+        if (entries != null) {
+            try {
+                new JSONArray(entries);
+                return entries;
+            } catch (JSONException e) {
+                // Falls through to quarantine
+            }
+        }
+
+        File corrupt = new File(file.getPath() + ".corrupt");
+        corrupt.delete();
+        if (!file.renameTo(corrupt)) {
+            throw new IOException("Metadata index is corrupt and could not be moved aside: " + file);
+        }
+        return rebuild();
+    }
+
+    /**
+     * Indexes the recordings found next to the index file and commits the result.
+     */
+    private String rebuild() throws IOException {
+        File dir = file.getParentFile();
+        if (dir == null) return "[]";
+
+        try {
+            JSONArray entries = RecordingLibrary.scanDirectory(dir);
+            if (entries.length() == 0) return "[]";
+
+            commit(entries.toString());
+            return snapshot;
+        } catch (JSONException e) {
+            return "[]";
+        }
+    }
+
+    /**
+     * Returns the entries text if the checksum matches, otherwise null.
+     */
+    private static String verified(String content) {
+        int entriesStart = PREFIX.length() + CRC_HEX_LENGTH + ENTRIES_KEY.length();
+        if (!content.startsWith(PREFIX)
+                || content.length() <= entriesStart
+                || !content.startsWith(ENTRIES_KEY, PREFIX.length() + CRC_HEX_LENGTH)
+                || !content.endsWith("}")) {
+            return null;
+        }
+
+        String expected = content.substring(PREFIX.length(), PREFIX.length() + CRC_HEX_LENGTH);
+        String entries = content.substring(entriesStart, content.length() - 1);
+        return expected.equals(crc32Hex(entries)) ? entries : null;
+    }
+
+    private void commit(String entries) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        String content = PREFIX + crc32Hex(entries) + ENTRIES_KEY + entries + "}\n";
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+        snapshot = entries;
+    }
+
+    private static String crc32Hex(String text) {
+        CRC32 crc = new CRC32();
+        crc.update(text.getBytes(StandardCharsets.UTF_8));
+        return String.format(Locale.US, "%08x", crc.getValue());
+    }
+
+    private static String readFile(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(file.length(), 16));
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,65 @@
+package com.otarena.app.recording;
+
+import java.io.File;
+
+/**
+ * Naming rules for everything stored in the recordings directory.
+ *
+ * A recording is "<name>.mp4", "<name>.ts" when streamed live, or "<name>.ts.enc" when
+ * written in encrypted mode. It may
+ * have companions next to it: the marker index ("<file>.markers.json") and a
+ * directory of evidence stills ("<file>_evidence/").
+ */
+public final class RecordingFiles {
+
+    public static final String METADATA_FILE_NAME = "recordings_metadata.json";
+    public static final String MP4_SUFFIX = ".mp4";
+    public static final String TS_SUFFIX = ".ts";
+    public static final String ENCRYPTED_SUFFIX = ".ts.enc";
+    public static final String EVIDENCE_DIR_SUFFIX = "_evidence";
+
+    private RecordingFiles() {}
+
+    public static boolean isRecordingName(String name) {
+        return name.endsWith(MP4_SUFFIX) || name.endsWith(TS_SUFFIX) || name.endsWith(ENCRYPTED_SUFFIX);
+    }
+
+    /**
+     * "<name>.mp4" becomes "<name>.ts", for recordings written as MPEG-2 TS.
+     */
+    public static String tsNameFor(String fileName) {
+        String base = fileName.endsWith(MP4_SUFFIX)
+                ? fileName.substring(0, fileName.length() - MP4_SUFFIX.length())
+                : fileName;
+        return base + TS_SUFFIX;
+    }
+
+    public static boolean isEncrypted(File file) {
+        return file.getName().endsWith(ENCRYPTED_SUFFIX);
+    }
+
+    public static File evidenceDirFor(File recording) {
+        return new File(recording.getParentFile(), recording.getName() + EVIDENCE_DIR_SUFFIX);
+    }
+
+    /**
+     * Deletes the recording together with its marker index and evidence stills.
+     */
+    public static boolean deleteWithCompanions(File recording) {
+        if (!recording.delete()) {
+            return false;
+        }
+
+        RecordingMarkers.delete(recording);
+
+        File evidenceDir = evidenceDirFor(recording);
+        File[] stills = evidenceDir.listFiles();
+        if (stills != null) {
+            for (File still : stills) {
+                still.delete();
+            }
+            evidenceDir.delete();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,218 @@
+package com.otarena.app.recording;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The recordings directory and its metadata index ("recordings_metadata.json").
+ *
+ * Plain Java on purpose: the Android side only supplies the directory, so the same code
+ * runs under the JVM benchmarks. Errors are thrown to the caller, which logs them.
+ *
+ * Every library on the same directory shares one {@link MetadataStore}, so index updates
+ * from the service and the plugin are atomic with respect to each other.
+ */
+public class RecordingLibrary {
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    private final File recordsDir;
+    private final MetadataStore store;
+
+    public RecordingLibrary(File recordsDir) {
+        this.recordsDir = recordsDir;
+        this.store = MetadataStore.forFile(metadataFileIn(recordsDir));
+    }
+
+    public File getRecordsDirectory() {
+        return recordsDir;
+    }
+
+    public File getMetadataFile() {
+        return metadataFileIn(recordsDir);
+    }
+
+    /**
+     * Returns a copy of the metadata entries, or an empty array if there is no index yet.
+     */
+    public JSONArray readMetadata() throws IOException, JSONException {
+        return store.read();
+    }
+
+    public void writeMetadata(JSONArray entries) throws IOException, JSONException {
+        store.replace(entries);
+    }
+
+    /**
+     * Applies a read-modify-write to the index atomically with respect to every other update,
+     * from this or any other library on the same directory.
+     */
+    public void update(MetadataStore.Mutation mutation) throws IOException, JSONException {
+        store.update(mutation);
+    }
+
+    public void addEntry(JSONObject entry) throws IOException, JSONException {
+        store.update(entries -> {
+            entries.put(entry);
+            return true;
+        });
+    }
+
+    public JSONObject findEntry(String path) throws IOException, JSONException {
+        JSONArray entries = readMetadata();
+        int index = indexOf(entries, path);
+        return index >= 0 ? entries.getJSONObject(index) : null;
+    }
+
+    /**
+     * Merges {@code fields} into the entry for {@code path}. Returns false if there is no such
+     * entry.
+     */
+    public boolean updateEntry(String path, JSONObject fields) throws IOException, JSONException {
+        boolean[] found = new boolean[1];
+        store.update(entries -> {
+            int index = indexOf(entries, path);
+            if (index < 0) return false;
+
+            JSONObject entry = entries.getJSONObject(index);
+            JSONArray names = fields.names();
+            for (int j = 0; names != null && j < names.length(); j++) {
+                String name = names.getString(j);
+                entry.put(name, fields.get(name));
+            }
+            found[0] = true;
+            return true;
+        });
+        return found[0];
+    }
+
+    public void removeEntry(String path) throws IOException, JSONException {
+        store.update(entries -> {
+            boolean removed = false;
+            for (int i = entries.length() - 1; i >= 0; i--) {
+                if (entries.getJSONObject(i).getString("path").equals(path)) {
+                    entries.remove(i);
+                    removed = true;
+                }
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Drops metadata entries whose recording no longer exists.
+     */
+    public void pruneMissingEntries() throws IOException, JSONException {
+        store.update(entries -> {
+            boolean removed = false;
+            for (int i = entries.length() - 1; i >= 0; i--) {
+                if (!new File(entries.getJSONObject(i).getString("path")).exists()) {
+                    entries.remove(i);
+                    removed = true;
+                }
+            }
+            return removed;
+        });
+    }
+
+    /**
+     * Deletes recordings last modified more than {@code days} before {@code now}, then prunes
+     * the index. Returns the names of the deleted recordings.
+     */
+    public List<String> deleteOlderThan(int days, long now) throws IOException, JSONException {
+        List<String> deleted = new ArrayList<>();
+        File[] files = recordsDir.listFiles((dir, name) -> RecordingFiles.isRecordingName(name));
+        if (files == null) return deleted;
+
+        long cutoffTime = now - days * DAY_MS;
+        for (File file : files) {
+            if (file.isFile() && file.lastModified() < cutoffTime) {
+                if (RecordingFiles.deleteWithCompanions(file)) {
+                    deleted.add(file.getName());
+                }
+            }
+        }
+
+        pruneMissingEntries();
+        return deleted;
+    }
+
+    /**
+     * Lists recordings from the index, falling back to a directory scan when the index is
+     * missing, unreadable or only references deleted files.
+     */
+    public JSONArray listRecordings() throws JSONException {
+        JSONArray recordings = new JSONArray();
+        if (!recordsDir.isDirectory()) return recordings;
+
+        try {
+            JSONArray entries = readMetadata();
+            for (int i = 0; i < entries.length(); i++) {
+                JSONObject meta = entries.getJSONObject(i);
+                File videoFile = new File(meta.getString("path"));
+                if (videoFile.exists()) {
+                    recordings.put(describe(videoFile,
+                            meta.optLong("created", videoFile.lastModified()),
+                            meta.optLong("duration", 0)));
+                }
+            }
+        } catch (IOException | JSONException e) {
+            recordings = new JSONArray();
+        }
+
+        if (recordings.length() == 0) {
+            recordings = scanDirectory(recordsDir);
+        }
+        return recordings;
+    }
+
+    /**
+     * Describes every recording in {@code dir}, oldest first, the way the service indexes a new
+     * one. Durations are unknown and left at 0.
+     */
+    static JSONArray scanDirectory(File dir) throws JSONException {
+        JSONArray recordings = new JSONArray();
+        File[] files = dir.listFiles((d, name) -> RecordingFiles.isRecordingName(name));
+        if (files == null) return recordings;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.isFile()) {
+                recordings.put(describe(file, file.lastModified(), 0));
+            }
+        }
+        return recordings;
+    }
+
+    private static File metadataFileIn(File recordsDir) {
+        return new File(recordsDir, RecordingFiles.METADATA_FILE_NAME);
+    }
+
+    private static int indexOf(JSONArray entries, String path) throws JSONException {
+        for (int i = 0; i < entries.length(); i++) {
+            if (entries.getJSONObject(i).getString("path").equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static JSONObject describe(File file, long created, long duration) throws JSONException {
+        JSONObject recording = new JSONObject();
+        recording.put("path", file.getAbsolutePath());
+        recording.put("name", file.getName());
+        recording.put("size", file.length());
+        recording.put("created", created);
+        recording.put("duration", duration);
+        recording.put("encrypted", RecordingFiles.isEncrypted(file));
+        return recording;
+    }
+}
@@ -0,0 +1,89 @@
+package com.otarena.app.recording;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Sidecar seek index stored next to a recording ("<name>.mp4.markers.json").
+ *
+ * Each marker holds its monotonic offset from the start of the recording and, once the
+ * recording has been finalized, the presentation time of the nearest preceding keyframe.
+ * Reviewers can seek or cut a clip straight to that keyframe without scanning the MP4.
+ */
+public class RecordingMarkers {
+
+    public static final String SIDECAR_SUFFIX = ".markers.json";
+
+    public static final String KEY_LABEL = "label";
+    public static final String KEY_OFFSET_MS = "offsetMs";
+    public static final String KEY_CREATED = "created";
+    public static final String KEY_KEYFRAME_US = "keyframeUs";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private RecordingMarkers() {}
+
+    public static File sidecarFor(File recording) {
+        return new File(recording.getParentFile(), recording.getName() + SIDECAR_SUFFIX);
+    }
+
+    public static JSONObject newMarker(String label, long offsetMs, long createdAt) throws JSONException {
+        JSONObject marker = new JSONObject();
+        marker.put(KEY_LABEL, label);
+        marker.put(KEY_OFFSET_MS, offsetMs);
+        marker.put(KEY_CREATED, createdAt);
+        return marker;
+    }
+
+    /**
+     * Returns the markers stored for the recording, or an empty array if it has no sidecar.
+     */
+    public static JSONArray read(File recording) throws IOException, JSONException {
+        File sidecar = sidecarFor(recording);
+        if (!sidecar.exists() || sidecar.length() == 0) {
+            return new JSONArray();
+        }
+
+        String content;
+        try (Scanner scanner = new Scanner(sidecar, "UTF-8")) {
+            content = scanner.useDelimiter("\\A").next();
+        }
+        JSONObject index = new JSONObject(content);
+        JSONArray markers = index.optJSONArray("markers");
+        return markers != null ? markers : new JSONArray();
+    }
+
+    public static void write(File recording, JSONArray markers) throws IOException, JSONException {
+        JSONObject index = new JSONObject();
+        index.put("version", FORMAT_VERSION);
+        index.put("recording", recording.getName());
+        index.put("markers", markers);
+
+        // Compact on purpose: the index is rewritten on every marker while recording. It goes
+        // through a temp file and a rename so a kill mid-write keeps the previous markers.
+        File sidecar = sidecarFor(recording);
+        File temp = new File(sidecar.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(index.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(sidecar)) {
+            temp.delete();
+            throw new IOException("Could not replace " + sidecar);
+        }
+    }
+
+    public static void delete(File recording) {
+        File sidecar = sidecarFor(recording);
+        if (sidecar.exists()) {
+            sidecar.delete();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.otarena.app.recording;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * A bounded on-disk queue of live segments waiting to be uploaded.
+ *
+ * The recorder side appends and never waits: when the spool is over its byte limit the
+ * oldest unsent segments are dropped, leaving a gap in the live view rather than stalling
+ * the recording (the full recording is still on disk). The uploader side waits for the
+ * next segment and removes it once the server has it.
+ */
+public class SegmentSpool {
+
+    public static final String SEGMENT_SUFFIX = ".ts";
+
+    public static final class Segment {
+        private final int sequence;
+        private final File file;
+        private final long length;
+
+        Segment(int sequence, File file, long length) {
+            this.sequence = sequence;
+            this.file = file;
+            this.length = length;
+        }
+
+        public int getSequence() {
+            return sequence;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final ArrayDeque<Segment> queue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private int nextSequence = 0;
+    private int droppedSegments = 0;
+    private Segment inFlight;
+    private boolean closed = false;
+
+    public SegmentSpool(File dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create spool directory " + dir);
+        }
+        // Leftovers from a previous session belong to a stream that has already ended
+        deleteFiles();
+    }
+
+    /**
+     * Writes a segment to the spool. Never blocks on the uploader.
+     */
+    public void append(byte[] data, int off, int len) throws IOException {
+        int sequence;
+        synchronized (this) {
+            if (closed) throw new IOException("Spool closed");
+            sequence = nextSequence++;
+        }
+
+        File file = new File(dir, String.format(Locale.US, "%08d%s", sequence, SEGMENT_SUFFIX));
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data, off, len);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not commit segment " + sequence);
+        }
+
+        synchronized (this) {
+            queue.addLast(new Segment(sequence, file, len));
+            queuedBytes += len;
+            while (queuedBytes > maxBytes && queue.size() > 1) {
+                // The segment being sent stays; the oldest one behind it goes
+                Segment head = queue.pollFirst();
+                Segment dropped = head;
+                if (head == inFlight) {
+                    dropped = queue.pollFirst();
+                    queue.addFirst(head);
+                }
+                queuedBytes -= dropped.length;
+                dropped.file.delete();
+                droppedSegments++;
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the oldest unsent segment, waiting up to {@code timeoutMs} for one. Returns null
+     * on timeout or once the spool is closed and empty. The returned segment is not dropped
+     * until it is {@link #remove removed}.
+     */
+    public synchronized Segment awaitNext(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (queue.isEmpty() && !closed) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) return null;
+            wait(remaining);
+        }
+        inFlight = queue.peekFirst();
+        return inFlight;
+    }
+
+    /**
+     * Removes a segment the server has acknowledged. A no-op if it was dropped meanwhile.
+     */
+    public synchronized void remove(Segment segment) {
+        if (segment == inFlight) {
+            inFlight = null;
+        }
+        if (queue.remove(segment)) {
+            queuedBytes -= segment.length;
+            segment.file.delete();
+        }
+    }
+
+    /**
+     * No more segments will be appended; {@link #awaitNext} returns null once the rest are sent.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized boolean isDrained() {
+        return closed && queue.isEmpty();
+    }
+
+    /**
+     * Sequence number of the last appended segment, or -1 if there is none.
+     */
+    public synchronized int getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    public synchronized int getDroppedSegments() {
+        return droppedSegments;
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Deletes everything still queued along with the spool directory.
+     */
+    public synchronized void delete() {
+        queue.clear();
+        queuedBytes = 0;
+        deleteFiles();
+        dir.delete();
+    }
+
+    private void deleteFiles() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.otarena.app.recording;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.UUID;
+
+/**
+ * Performance summary of one recording session, queued on the device and uploaded in
+ * batches so capture defaults can be tuned per device model.
+ *
+ * MediaRecorder does not report encoder latency or dropped frames, so the summary uses
+ * what the app can observe: how long handing a frame to the encoder surface takes (it blocks
+ * when the encoder falls behind), gaps in frame timestamps, and how long the output sink
+ * takes per write.
+ */
+public class SessionTelemetry {
+
+    public static final int SCHEMA_VERSION = 1;
+
+    // Longer gaps are the screen sitting still, which the virtual display does not repeat
+    private static final int MAX_COUNTED_GAP_FRAMES = 10;
+
+    private final String sessionId = UUID.randomUUID().toString();
+    private final long startedAt;
+    private final long frameIntervalNanos;
+    private final LatencyHistogram frameHandoff = new LatencyHistogram();
+    private final LatencyHistogram sinkWrites = new LatencyHistogram();
+
+    private String model;
+    private String manufacturer;
+    private int sdkInt;
+    private String codec;
+    private int bitRate;
+    private boolean encrypted;
+    private boolean streamed;
+    private boolean prewarmed;
+    private long startLatencyMs = -1;
+
+    private long frames = 0;
+    private long droppedFrames = 0;
+    private long lastFrameTimestampNanos = -1;
+
+    private int thermalStatus = -1;
+    private int maxThermalStatus = -1;
+    private int thermalSteps = 0;
+
+    private String failureCause;
+    private long durationMs = 0;
+    private long bytesWritten = 0;
+
+    public SessionTelemetry(long startedAt, int frameRate) {
+        this.startedAt = startedAt;
+        this.frameIntervalNanos = 1_000_000_000L / frameRate;
+    }
+
+    public synchronized void setDevice(String model, String manufacturer, int sdkInt) {
+        this.model = model;
+        this.manufacturer = manufacturer;
+        this.sdkInt = sdkInt;
+    }
+
+    public synchronized void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    public synchronized void setOutput(int bitRate, boolean encrypted, boolean streamed) {
+        this.bitRate = bitRate;
+        this.encrypted = encrypted;
+        this.streamed = streamed;
+    }
+
+    public synchronized void setStartLatency(long startLatencyMs, boolean prewarmed) {
+        this.startLatencyMs = startLatencyMs;
+        this.prewarmed = prewarmed;
+    }
+
+    /**
+     * A frame was handed to the encoder. {@code timestampNanos} is its presentation time.
+     */
+    public synchronized void onFrame(long timestampNanos, long handoffNanos) {
+        frames++;
+        frameHandoff.record(handoffNanos);
+
+        if (lastFrameTimestampNanos >= 0 && timestampNanos > lastFrameTimestampNanos) {
+            long missing = Math.round((double) (timestampNanos - lastFrameTimestampNanos) / frameIntervalNanos) - 1;
+            if (missing > 0 && missing < MAX_COUNTED_GAP_FRAMES) {
+                droppedFrames += missing;
+            }
+        }
+        lastFrameTimestampNanos = timestampNanos;
+    }
+
+    public void onSinkWrite(long nanos) {
+        sinkWrites.record(nanos);
+    }
+
+    /**
+     * Counts every change of the platform thermal status during the session.
+     */
+    public synchronized void onThermalStatus(int status) {
+        if (thermalStatus >= 0 && status != thermalStatus) {
+            thermalSteps++;
+        }
+        thermalStatus = status;
+        maxThermalStatus = Math.max(maxThermalStatus, status);
+    }
+
+    /**
+     * Records why the session failed or ended early. The first cause is kept.
+     */
+    public synchronized void setFailure(String cause) {
+        if (failureCause == null) {
+            failureCause = cause;
+        }
+    }
+
+    public synchronized void finish(long durationMs, long bytesWritten) {
+        this.durationMs = durationMs;
+        this.bytesWritten = bytesWritten;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    public synchronized int getThermalSteps() {
+        return thermalSteps;
+    }
+
+    public synchronized String getFailureCause() {
+        return failureCause;
+    }
+
+    public synchronized long getBytesPerMinute() {
+        return durationMs > 0 ? bytesWritten * 60_000 / durationMs : 0;
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("schemaVersion", SCHEMA_VERSION);
+        json.put("sessionId", sessionId);
+        json.put("startedAt", startedAt);
+        json.put("model", model);
+        json.put("manufacturer", manufacturer);
+        json.put("sdkInt", sdkInt);
+        json.put("codec", codec);
+        json.put("bitRate", bitRate);
+        json.put("encrypted", encrypted);
+        json.put("streamed", streamed);
+        json.put("prewarmed", prewarmed);
+        json.put("startLatencyMs", startLatencyMs);
+        json.put("durationMs", durationMs);
+        json.put("bytesPerMinute", getBytesPerMinute());
+        json.put("frames", frames);
+        json.put("droppedFrames", droppedFrames);
+        // Unmeasured timings are null, not 0, so the server's averages leave them out
+        json.put("frameHandoffAvgMs", measured(frameHandoff, frameHandoff.getMeanMs()));
+        json.put("frameHandoffP95Ms", measured(frameHandoff, frameHandoff.getPercentileMs(95)));
+        json.put("sinkWriteAvgMs", measured(sinkWrites, sinkWrites.getMeanMs()));
+        json.put("sinkWriteP95Ms", measured(sinkWrites, sinkWrites.getPercentileMs(95)));
+        json.put("thermalSteps", thermalSteps);
+        json.put("maxThermalStatus", maxThermalStatus);
+        json.put("failureCause", failureCause != null ? failureCause : JSONObject.NULL);
+        return json;
+    }
+
+    private static Object measured(LatencyHistogram histogram, double ms) {
+        return histogram.getCount() > 0 ? round(ms) : JSONObject.NULL;
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100) / 100.0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.otarena.app.recording;
+
+/**
+ * How much a recording may write given the free space on the volume.
+ *
+ * A fixed reserve is kept back so the container can be finalized and companions written
+ * even when the budget is used up. The remainder is sized for a full match at the preferred
+ * bitrate; when it isn't, the bitrate is lowered to fit, down to a floor below which the
+ * recording is refused.
+ */
+public final class StorageBudget {
+
+    public static final long RESERVE_BYTES = 64L * 1024 * 1024;
+    public static final long TARGET_DURATION_MS = 30L * 60 * 1000;
+    public static final long MIN_DURATION_MS = 60L * 1000;
+    public static final int MIN_BIT_RATE = 2 * 1000 * 1000;
+
+    private final long availableBytes;
+    private final int bitRate;
+    private final long maxFileBytes;
+    private final long maxDurationMs;
+
+    private StorageBudget(long availableBytes, int bitRate, long maxFileBytes, long maxDurationMs) {
+        this.availableBytes = availableBytes;
+        this.bitRate = bitRate;
+        this.maxFileBytes = maxFileBytes;
+        this.maxDurationMs = maxDurationMs;
+    }
+
+    public static StorageBudget forAvailableBytes(long availableBytes, int preferredBitRate) {
+        long usableBytes = Math.max(0, availableBytes - RESERVE_BYTES);
+
+        long fittingBitRate = usableBytes * 8 * 1000 / TARGET_DURATION_MS;
+        int bitRate = (int) Math.max(MIN_BIT_RATE, Math.min(preferredBitRate, fittingBitRate));
+
+        long maxDurationMs = usableBytes * 8 * 1000 / bitRate;
+        return new StorageBudget(availableBytes, bitRate, usableBytes, maxDurationMs);
+    }
+
+    /**
+     * False when even the minimum bitrate would run out of space within {@link #MIN_DURATION_MS}.
+     */
+    public boolean isSufficient() {
+        return maxDurationMs >= MIN_DURATION_MS;
+    }
+
+    public long getAvailableBytes() {
+        return availableBytes;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    /**
+     * Bytes the recording may grow to before it has to be finalized.
+     */
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    /**
+     * Estimated duration at {@link #getBitRate()} before {@link #getMaxFileBytes()} is reached.
+     */
+    public long getMaxDurationMs() {
+        return maxDurationMs;
+    }
+}
@@ -0,0 +1,114 @@
+package com.otarena.app.recording;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Bounded on-disk queue of telemetry entries, one compact JSON object per line. When full
+ * the oldest entries are dropped; telemetry is never worth growing storage for. Every change
+ * rewrites the file through a temp file and a rename, so a crash leaves the old or the new
+ * queue but never a torn one.
+ */
+public class TelemetryQueue {
+
+    private final File file;
+    private final int maxEntries;
+    private int droppedEntries = 0;
+
+    public TelemetryQueue(File file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+    }
+
+    public synchronized void add(JSONObject entry) throws IOException {
+        List<String> lines = readLines();
+        lines.add(entry.toString());
+        while (lines.size() > maxEntries) {
+            lines.remove(0);
+            droppedEntries++;
+        }
+        writeLines(lines);
+    }
+
+    /**
+     * Returns up to {@code max} entries from the head of the queue without removing them.
+     * Lines that do not parse are dropped from the queue.
+     */
+    public synchronized List<JSONObject> peek(int max) throws IOException {
+        List<String> lines = readLines();
+        List<JSONObject> entries = new ArrayList<>();
+        boolean corrupt = false;
+        for (Iterator<String> it = lines.iterator(); it.hasNext() && entries.size() < max; ) {
+            try {
+                entries.add(new JSONObject(it.next()));
+            } catch (JSONException e) {
+                it.remove();
+                corrupt = true;
+            }
+        }
+        if (corrupt) writeLines(lines);
+        return entries;
+    }
+
+    /**
+     * Removes {@code count} entries from the head of the queue, e.g. once a batch returned by
+     * {@link #peek} has been delivered.
+     */
+    public synchronized void removeFirst(int count) throws IOException {
+        List<String> lines = readLines();
+        writeLines(new ArrayList<>(lines.subList(Math.min(count, lines.size()), lines.size())));
+    }
+
+    public synchronized int size() throws IOException {
+        return readLines().size();
+    }
+
+    public synchronized int getDroppedEntries() {
+        return droppedEntries;
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!file.exists()) return lines;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private void writeLines(List<String> lines) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            for (String line : lines) {
+                out.write(line.getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+}
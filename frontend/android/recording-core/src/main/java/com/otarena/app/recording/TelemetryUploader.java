@@ -0,0 +1,105 @@
+package com.otarena.app.recording;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Posts queued session summaries to the metrics endpoint as {@code {"sessions": [...]}},
+ * a batch at a time. Entries leave the queue only once the server has them; a batch the
+ * server rejects as malformed is dropped so it cannot block the queue. A batch that is too
+ * large is split in half and retried, so only an entry too large on its own is dropped.
+ * Anything else (no network, expired auth, server errors) leaves the queue for the next
+ * flush.
+ *
+ * Blocking; callers run it on a background thread.
+ */
+public class TelemetryUploader {
+
+    public static final int BATCH_SIZE = 20;
+
+    private static final int CONNECT_TIMEOUT_MS = 10 * 1000;
+    private static final int READ_TIMEOUT_MS = 30 * 1000;
+
+    private final String url;
+    private final Map<String, String> headers;
+
+    public TelemetryUploader(String url, Map<String, String> headers) {
+        this.url = url;
+        this.headers = new LinkedHashMap<>(headers);
+    }
+
+    /**
+     * Sends queued entries until the queue is empty or the server stops taking them. Returns
+     * the number of entries delivered.
+     */
+    public int flush(TelemetryQueue queue) throws IOException {
+        int sent = 0;
+        int batchSize = BATCH_SIZE;
+        while (true) {
+            List<JSONObject> batch = queue.peek(batchSize);
+            if (batch.isEmpty()) return sent;
+
+            int status = post(batch);
+            if (status >= 200 && status < 300) {
+                queue.removeFirst(batch.size());
+                sent += batch.size();
+                batchSize = Math.min(BATCH_SIZE, batchSize * 2);
+            } else if (status == HttpURLConnection.HTTP_ENTITY_TOO_LARGE && batch.size() > 1) {
+                batchSize = batch.size() / 2;
+            } else if (status == HttpURLConnection.HTTP_BAD_REQUEST
+                    || status == HttpURLConnection.HTTP_ENTITY_TOO_LARGE
+                    || status == 422) {
+                queue.removeFirst(batch.size());
+            } else {
+                return sent;
+            }
+        }
+    }
+
+    private int post(List<JSONObject> batch) throws IOException {
+        byte[] body;
+        try {
+            body = new JSONObject().put("sessions", new JSONArray(batch)).toString()
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Content-Type", "application/json");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+
+        int status = connection.getResponseCode();
+        InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (response != null) {
+            try (InputStream in = response) {
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) != -1) {
+                    // Drain so the connection can be reused
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,153 @@
+package com.otarena.app.recording;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class LiveSegmentUploaderTest {
+
+    private static final int PACKET = LiveSegmenter.TS_PACKET_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void segmentsArriveInOrderAndReassembleToTheRecording() throws Exception {
+        try (StandInIngestServer server = new StandInIngestServer()) {
+            SegmentSpool spool = new SegmentSpool(folder.newFolder("spool"), 64L * 1024 * 1024);
+            LiveSegmentUploader uploader = startUploader(spool, server);
+            LiveSegmenter segmenter = new LiveSegmenter(spool, 2000, 256 * 1024, clock::get);
+
+            byte[] recording = writeInRandomChunks(segmenter, 3000 * PACKET, 250);
+            segmenter.close();
+
+            assertTrue(uploader.finish(10_000));
+            Map<Integer, byte[]> received = server.segments();
+            assertEquals(spool.getLastSequence() + 1, received.size());
+            assertArrayEquals(recording, concat(received));
+            for (byte[] segment : received.values()) {
+                assertEquals(0, segment.length % PACKET);
+            }
+            assertEquals("{\"lastSequence\":" + spool.getLastSequence() + ",\"droppedSegments\":0}",
+                    server.completeBody());
+        }
+    }
+
+    @Test
+    public void backsOffWhenTheServerIsBusyAndLosesNothing() throws Exception {
+        try (StandInIngestServer server = new StandInIngestServer()) {
+            server.rejectNext(3);
+            SegmentSpool spool = new SegmentSpool(folder.newFolder("spool"), 64L * 1024 * 1024);
+            LiveSegmentUploader uploader = startUploader(spool, server);
+            LiveSegmenter segmenter = new LiveSegmenter(spool, 2000, 64 * 1024, clock::get);
+
+            byte[] recording = writeInRandomChunks(segmenter, 2000 * PACKET, 0);
+            segmenter.close();
+
+            assertTrue(uploader.finish(10_000));
+            assertEquals(3, server.rejectedCount());
+            assertEquals(3, uploader.getRetries());
+            assertArrayEquals(recording, concat(server.segments()));
+        }
+    }
+
+    @Test
+    public void recordingNeverWaitsForAStalledNetwork() throws Exception {
+        try (StandInIngestServer server = new StandInIngestServer()) {
+            server.stall();
+            File spoolDir = folder.newFolder("spool");
+            SegmentSpool spool = new SegmentSpool(spoolDir, 1024 * 1024);
+            LiveSegmentUploader uploader = startUploader(spool, server);
+            LiveSegmenter segmenter = new LiveSegmenter(spool, 2000, 128 * 1024, clock::get);
+
+            // 20 MB against a 1 MB spool with nothing getting through
+            long start = System.nanoTime();
+            writeInRandomChunks(segmenter, 20 * 1024 * 1024 / PACKET * PACKET, 0);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue("writes took " + elapsedMs + "ms", elapsedMs < 5000);
+            assertTrue(spool.getDroppedSegments() > 0);
+            assertTrue(spool.getQueuedBytes() <= 1024 * 1024 + 128 * 1024);
+
+            segmenter.close();
+            server.resume();
+            assertTrue(uploader.finish(10_000));
+
+            // The live view has gaps where segments were dropped, but what arrived is in order
+            int expected = spool.getLastSequence() + 1 - spool.getDroppedSegments();
+            assertEquals(expected, uploader.getSegmentsSent());
+            assertTrue(server.completeBody().contains("\"droppedSegments\":" + spool.getDroppedSegments()));
+        }
+    }
+
+    @Test
+    public void retriesWithRefreshedHeadersAfterTheTokenExpires() throws Exception {
+        try (StandInIngestServer server = new StandInIngestServer()) {
+            server.requireAuthorization("Bearer fresh");
+            SegmentSpool spool = new SegmentSpool(folder.newFolder("spool"), 64L * 1024 * 1024);
+            LiveSegmentUploader uploader = startUploader(spool, server);
+            LiveSegmenter segmenter = new LiveSegmenter(spool, 2000, 64 * 1024, clock::get);
+
+            byte[] recording = writeInRandomChunks(segmenter, 1000 * PACKET, 0);
+            segmenter.close();
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.unauthorizedCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.unauthorizedCount());
+            uploader.setHeaders(Collections.singletonMap("Authorization", "Bearer fresh"));
+
+            assertTrue(uploader.finish(10_000));
+            assertEquals(1, server.unauthorizedCount());
+            assertArrayEquals(recording, concat(server.segments()));
+        }
+    }
+
+    private LiveSegmentUploader startUploader(SegmentSpool spool, StandInIngestServer server) {
+        LiveSegmentUploader uploader = new LiveSegmentUploader(spool, server.baseUrl(),
+                Collections.singletonMap("Authorization", "Bearer test"));
+        uploader.start();
+        return uploader;
+    }
+
+    /**
+     * Writes whole TS-sized packets in chunks of random size, advancing the clock
+     * {@code msPerChunk} between writes, and returns everything written.
+     */
+    private byte[] writeInRandomChunks(LiveSegmenter segmenter, int totalBytes, long msPerChunk) throws Exception {
+        Random random = new Random(totalBytes);
+        byte[] data = new byte[totalBytes];
+        random.nextBytes(data);
+
+        int offset = 0;
+        while (offset < totalBytes) {
+            int n = Math.min(totalBytes - offset, 1 + random.nextInt(64 * 1024));
+            segmenter.write(data, offset, n);
+            offset += n;
+            clock.addAndGet(msPerChunk);
+        }
+        return data;
+    }
+
+    private static byte[] concat(Map<Integer, byte[]> segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] segment : segments.values()) {
+            out.write(segment, 0, segment.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,225 @@
+package com.otarena.app.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RecordingLibraryStressTest {
+
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int ENTRIES_PER_WRITER = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void concurrentWritersFromSeparateLibrariesLoseNothing() throws Exception {
+        File recordsDir = folder.newFolder("records");
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger reads = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+        List<Future<?>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            final int writer = w;
+            writers.add(executor.submit(() -> {
+                // Each thread builds its own library, as the service and the plugin do
+                RecordingLibrary library = new RecordingLibrary(recordsDir);
+                start.await();
+                for (int i = 0; i < ENTRIES_PER_WRITER; i++) {
+                    String path = pathFor(recordsDir, writer, i);
+                    library.addEntry(new JSONObject().put("path", path).put("duration", 0));
+                    assertTrue(library.updateEntry(path, new JSONObject().put("duration", i)));
+                    if (i % 2 == 1) {
+                        library.removeEntry(pathFor(recordsDir, writer, i - 1));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            executor.submit(() -> {
+                RecordingLibrary library = new RecordingLibrary(recordsDir);
+                try {
+                    start.await();
+                    while (writing.get()) {
+                        JSONArray entries = library.readMetadata();
+                        for (int i = 0; i < entries.length(); i++) {
+                            entries.getJSONObject(i).getString("path");
+                        }
+                        library.listRecordings();
+                        reads.incrementAndGet();
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            });
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertTrue(reads.get() > 0);
+
+        Set<String> expected = new HashSet<>();
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 1; i < ENTRIES_PER_WRITER; i += 2) {
+                expected.add(pathFor(recordsDir, w, i));
+            }
+        }
+        assertEquals(expected, paths(new RecordingLibrary(recordsDir).readMetadata()));
+
+        // What is on disk matches and passes its checksum when loaded by a fresh store
+        File copyDir = folder.newFolder("copy");
+        Files.copy(new File(recordsDir, RecordingFiles.METADATA_FILE_NAME).toPath(),
+                new File(copyDir, RecordingFiles.METADATA_FILE_NAME).toPath());
+        JSONArray reloaded = new RecordingLibrary(copyDir).readMetadata();
+        assertEquals(expected, paths(reloaded));
+        assertFalse(new File(copyDir, RecordingFiles.METADATA_FILE_NAME + ".corrupt").exists());
+    }
+
+    @Test
+    public void readersDoNotWaitForAWriterHoldingTheIndex() throws Exception {
+        RecordingLibrary library = new RecordingLibrary(folder.newFolder("records"));
+        library.addEntry(new JSONObject().put("path", "/a.mp4"));
+
+        CountDownLatch writerInside = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            try {
+                library.update(entries -> {
+                    writerInside.countDown();
+                    try {
+                        releaseWriter.await();
+                    } catch (InterruptedException e) {
+                        return false;
+                    }
+                    entries.put(new JSONObject().put("path", "/b.mp4"));
+                    return true;
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        assertTrue(writerInside.await(5, TimeUnit.SECONDS));
+
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            JSONArray seen = reader.submit(library::readMetadata).get(1, TimeUnit.SECONDS);
+            assertEquals(1, seen.length());
+        } finally {
+            releaseWriter.countDown();
+            writer.join();
+            reader.shutdown();
+        }
+        assertEquals(2, library.readMetadata().length());
+    }
+
+    @Test
+    public void corruptIndexIsMovedAsideAndRebuiltFromTheDirectory() throws Exception {
+        File recordsDir = folder.newFolder("records");
+        File recording = new File(recordsDir, "match_1.mp4");
+        recording.createNewFile();
+        writeCorruptIndex(recordsDir);
+
+        RecordingLibrary library = new RecordingLibrary(recordsDir);
+        assertEquals(Collections.singleton(recording.getAbsolutePath()), paths(library.readMetadata()));
+        assertTrue(new File(recordsDir, RecordingFiles.METADATA_FILE_NAME + ".corrupt").exists());
+        assertEquals(1, library.listRecordings().length());
+        assertNull(library.findEntry("/gone.mp4"));
+    }
+
+    @Test
+    public void recordingsSurviveAnUpdateAfterTheIndexWasQuarantined() throws Exception {
+        File recordsDir = folder.newFolder("records");
+        File first = new File(recordsDir, "match_1_a.mp4");
+        File second = new File(recordsDir, "match_1_b.ts.enc");
+        first.createNewFile();
+        second.createNewFile();
+        writeCorruptIndex(recordsDir);
+
+        RecordingLibrary library = new RecordingLibrary(recordsDir);
+        File latest = new File(recordsDir, "match_2_c.mp4");
+        latest.createNewFile();
+        library.addEntry(new JSONObject().put("path", latest.getAbsolutePath()).put("duration", 0));
+
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                first.getAbsolutePath(), second.getAbsolutePath(), latest.getAbsolutePath()));
+        assertEquals(expected, paths(library.listRecordings()));
+        assertEquals(expected, paths(new RecordingLibrary(copyOf(recordsDir)).readMetadata()));
+    }
+
+    @Test
+    public void legacyArrayIndexIsStillRead() throws Exception {
+        File recordsDir = folder.newFolder("records");
+        try (FileOutputStream out = new FileOutputStream(new File(recordsDir, RecordingFiles.METADATA_FILE_NAME))) {
+            out.write("[\n  {\"path\": \"/old.mp4\", \"duration\": 5}\n]".getBytes(StandardCharsets.UTF_8));
+        }
+
+        RecordingLibrary library = new RecordingLibrary(recordsDir);
+        assertEquals(5, library.findEntry("/old.mp4").getLong("duration"));
+    }
+
+    private static void writeCorruptIndex(File recordsDir) throws Exception {
+        try (FileOutputStream out = new FileOutputStream(new File(recordsDir, RecordingFiles.METADATA_FILE_NAME))) {
+            // Valid JSON, but the entries no longer match the checksum
+            out.write("{\"crc32\":\"00000000\",\"entries\":[{\"path\":\"/gone.mp4\"}]}"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // The committed index, as a fresh store in another directory loads it
+    private File copyOf(File recordsDir) throws Exception {
+        File copyDir = folder.newFolder();
+        Files.copy(new File(recordsDir, RecordingFiles.METADATA_FILE_NAME).toPath(),
+                new File(copyDir, RecordingFiles.METADATA_FILE_NAME).toPath());
+        return copyDir;
+    }
+
+    private static String pathFor(File recordsDir, int writer, int index) {
+        return new File(recordsDir, "match_" + writer + "_" + index + ".mp4").getAbsolutePath();
+    }
+
+    private static Set<String> paths(JSONArray entries) throws Exception {
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < entries.length(); i++) {
+            paths.add(entries.getJSONObject(i).getString("path"));
+        }
+        return paths;
+    }
+}
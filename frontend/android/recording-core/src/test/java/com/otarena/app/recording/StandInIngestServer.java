@@ -0,0 +1,153 @@
+package com.otarena.app.recording;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the backend's live evidence ingest endpoint
+ * ({@code PUT /api/matches/:id/live/segments/:seq}, {@code POST /api/matches/:id/live/complete}).
+ *
+ * It can answer the first few segment requests with 503 to exercise backpressure handling,
+ * hold requests open to simulate a stalled network, and reject a stale auth token with 401.
+ */
+class StandInIngestServer implements AutoCloseable {
+
+    static final String BASE_PATH = "/api/matches/42/live";
+
+    private final HttpServer server;
+    private final Map<Integer, byte[]> segments = new TreeMap<>();
+    private final AtomicInteger rejectRemaining = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    private volatile CountDownLatch stall = new CountDownLatch(0);
+    private volatile String completeBody;
+    private volatile String requiredAuthorization;
+    private final AtomicInteger unauthorized = new AtomicInteger();
+
+    StandInIngestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(BASE_PATH, this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + BASE_PATH;
+    }
+
+    /**
+     * Answers the next {@code count} segment requests with 503 and Retry-After: 0.
+     */
+    void rejectNext(int count) {
+        rejectRemaining.set(count);
+    }
+
+    /**
+     * Holds every request until {@link #resume()} is called.
+     */
+    void stall() {
+        stall = new CountDownLatch(1);
+    }
+
+    void resume() {
+        stall.countDown();
+    }
+
+    /**
+     * Answers any request without this Authorization header with 401.
+     */
+    void requireAuthorization(String value) {
+        requiredAuthorization = value;
+    }
+
+    int unauthorizedCount() {
+        return unauthorized.get();
+    }
+
+    int rejectedCount() {
+        return rejected.get();
+    }
+
+    synchronized Map<Integer, byte[]> segments() {
+        return new TreeMap<>(segments);
+    }
+
+    String completeBody() {
+        return completeBody;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            stall.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] body = readAll(exchange.getRequestBody());
+        String path = exchange.getRequestURI().getPath().substring(BASE_PATH.length());
+
+        String authorization = requiredAuthorization;
+        if (authorization != null && !authorization.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            unauthorized.incrementAndGet();
+            respond(exchange, 401, "{\"message\":\"token expired\"}");
+            return;
+        }
+
+        if (path.startsWith("/segments/") && "PUT".equals(exchange.getRequestMethod())) {
+            if (rejectRemaining.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                rejected.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "0");
+                respond(exchange, 503, "{\"message\":\"busy\"}");
+                return;
+            }
+            int sequence = Integer.parseInt(path.substring("/segments/".length()));
+            synchronized (this) {
+                if (segments.containsKey(sequence)) {
+                    respond(exchange, 409, "{\"message\":\"duplicate\"}");
+                    return;
+                }
+                segments.put(sequence, body);
+            }
+            respond(exchange, 201, "{\"sequence\":" + sequence + "}");
+        } else if ("/complete".equals(path) && "POST".equals(exchange.getRequestMethod())) {
+            completeBody = new String(body, StandardCharsets.UTF_8);
+            respond(exchange, 200, "{}");
+        } else {
+            respond(exchange, 404, "{}");
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        resume();
+        server.stop(0);
+    }
+}
@@ -0,0 +1,72 @@
+package com.otarena.app.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class StorageBudgetTest {
+
+    private static final int PREFERRED_BIT_RATE = 8 * 1000 * 1000;
+    private static final long GB = 1024L * 1024 * 1024;
+
+    @Test
+    public void reserveIsKeptBackFromTheRecording() {
+        StorageBudget budget = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES + GB, PREFERRED_BIT_RATE);
+
+        assertEquals(StorageBudget.RESERVE_BYTES + GB, budget.getAvailableBytes());
+        assertEquals(GB, budget.getMaxFileBytes());
+    }
+
+    @Test
+    public void spaceInsideTheReserveIsNotUsable() {
+        StorageBudget budget = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES / 2, PREFERRED_BIT_RATE);
+
+        assertEquals(0, budget.getMaxFileBytes());
+        assertEquals(0, budget.getMaxDurationMs());
+        assertFalse(budget.isSufficient());
+    }
+
+    @Test
+    public void preferredBitRateIsKeptWhenAFullMatchFits() {
+        StorageBudget budget = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES + 4 * GB, PREFERRED_BIT_RATE);
+
+        assertEquals(PREFERRED_BIT_RATE, budget.getBitRate());
+        assertTrue(budget.getMaxDurationMs() >= StorageBudget.TARGET_DURATION_MS);
+    }
+
+    @Test
+    public void bitRateIsLoweredSoAFullMatchFits() {
+        // A full match at 4 Mbps
+        long usable = 4_000_000L / 8 * (StorageBudget.TARGET_DURATION_MS / 1000);
+        StorageBudget budget = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES + usable, PREFERRED_BIT_RATE);
+
+        assertEquals(4_000_000, budget.getBitRate());
+        assertEquals(StorageBudget.TARGET_DURATION_MS, budget.getMaxDurationMs());
+        assertTrue(budget.isSufficient());
+    }
+
+    @Test
+    public void bitRateIsNotLoweredBelowTheFloor() {
+        // Half a match at the minimum bitrate
+        long usable = (long) StorageBudget.MIN_BIT_RATE / 8 * (StorageBudget.TARGET_DURATION_MS / 2000);
+        StorageBudget budget = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES + usable, PREFERRED_BIT_RATE);
+
+        assertEquals(StorageBudget.MIN_BIT_RATE, budget.getBitRate());
+        assertEquals(StorageBudget.TARGET_DURATION_MS / 2, budget.getMaxDurationMs());
+        assertTrue(budget.isSufficient());
+    }
+
+    @Test
+    public void recordingIsRefusedBelowTheMinimumDuration() {
+        long minimum = (long) StorageBudget.MIN_BIT_RATE / 8 * (StorageBudget.MIN_DURATION_MS / 1000);
+
+        StorageBudget enough = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES + minimum, PREFERRED_BIT_RATE);
+        assertEquals(StorageBudget.MIN_DURATION_MS, enough.getMaxDurationMs());
+        assertTrue(enough.isSufficient());
+
+        StorageBudget tooLittle = StorageBudget.forAvailableBytes(StorageBudget.RESERVE_BYTES + minimum - 1, PREFERRED_BIT_RATE);
+        assertFalse(tooLittle.isSufficient());
+    }
+}
@@ -0,0 +1,161 @@
+package com.otarena.app.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TelemetryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void dropsTheOldestEntriesWhenFull() throws Exception {
+        TelemetryQueue queue = new TelemetryQueue(new File(folder.getRoot(), "sessions.jsonl"), 3);
+        for (int i = 0; i < 5; i++) {
+            queue.add(new JSONObject().put("n", i));
+        }
+
+        List<JSONObject> entries = queue.peek(10);
+        assertEquals(3, entries.size());
+        assertEquals(2, entries.get(0).getInt("n"));
+        assertEquals(2, queue.getDroppedEntries());
+
+        queue.removeFirst(2);
+        assertEquals(4, queue.peek(10).get(0).getInt("n"));
+    }
+
+    @Test
+    public void uploadsInBatchesAndKeepsWhatTheServerDidNotTake() throws Exception {
+        TelemetryQueue queue = new TelemetryQueue(new File(folder.getRoot(), "sessions.jsonl"), 100);
+        for (int i = 0; i < TelemetryUploader.BATCH_SIZE * 2 + 5; i++) {
+            queue.add(new JSONObject().put("n", i));
+        }
+
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger acceptRemaining = new AtomicInteger(2);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/telemetry", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                batchSizes.add(new JSONObject(body).getJSONArray("sessions").length());
+            }
+            exchange.sendResponseHeaders(acceptRemaining.getAndDecrement() > 0 ? 201 : 503, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/telemetry";
+            TelemetryUploader uploader = new TelemetryUploader(url, Collections.emptyMap());
+
+            assertEquals(TelemetryUploader.BATCH_SIZE * 2, uploader.flush(queue));
+            assertEquals(List.of(TelemetryUploader.BATCH_SIZE, TelemetryUploader.BATCH_SIZE, 5), batchSizes);
+            assertEquals(5, queue.size());
+            assertEquals(TelemetryUploader.BATCH_SIZE * 2, queue.peek(1).get(0).getInt("n"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void splitsABatchTheServerFindsTooLarge() throws Exception {
+        TelemetryQueue queue = new TelemetryQueue(new File(folder.getRoot(), "sessions.jsonl"), 100);
+        for (int i = 0; i < TelemetryUploader.BATCH_SIZE; i++) {
+            queue.add(new JSONObject().put("n", i).put("failureCause", i == 3 ? "x".repeat(5000) : null));
+        }
+
+        // Takes at most 4 sessions per request, and never the oversized one
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/telemetry", exchange -> {
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            int size = new JSONObject(body).getJSONArray("sessions").length();
+            batchSizes.add(size);
+            exchange.sendResponseHeaders(size > 4 || body.length() > 4096 ? 413 : 202, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/telemetry";
+            TelemetryUploader uploader = new TelemetryUploader(url, Collections.emptyMap());
+
+            // Everything but the oversized session gets through, without a request per session
+            assertEquals(TelemetryUploader.BATCH_SIZE - 1, uploader.flush(queue));
+            assertEquals(0, queue.size());
+            assertEquals(List.of(20, 10, 5, 2), batchSizes.subList(0, 4));
+            assertTrue(batchSizes.toString(), batchSizes.size() < TelemetryUploader.BATCH_SIZE);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void summarizesFrameGapsThermalStepsAndThroughput() throws Exception {
+        SessionTelemetry telemetry = new SessionTelemetry(0, 30);
+        long interval = 1_000_000_000L / 30;
+        long timestamp = 0;
+        for (int i = 0; i < 100; i++) {
+            // Frame 50 arrives three intervals late: two frames missing
+            timestamp += i == 50 ? 3 * interval : interval;
+            telemetry.onFrame(timestamp, i < 95 ? 1_000_000 : 20_000_000);
+        }
+        // A still screen for a few seconds is not counted as drops
+        telemetry.onFrame(timestamp + 5_000_000_000L, 1_000_000);
+
+        telemetry.onThermalStatus(0);
+        telemetry.onThermalStatus(1);
+        telemetry.onThermalStatus(2);
+        telemetry.onThermalStatus(1);
+        telemetry.setFailure("lowStorage");
+        telemetry.setFailure("recorderError");
+        telemetry.finish(120_000, 100L * 1024 * 1024);
+
+        JSONObject json = telemetry.toJson();
+        assertEquals(2, json.getLong("droppedFrames"));
+        assertEquals(101, json.getLong("frames"));
+        // 96 of 101 hand-offs took 1 ms, reported as the upper edge of its 0.1 ms bucket
+        assertEquals(1.1, json.getDouble("frameHandoffP95Ms"), 0.001);
+        assertEquals(3, json.getInt("thermalSteps"));
+        assertEquals(2, json.getInt("maxThermalStatus"));
+        assertEquals("lowStorage", json.getString("failureCause"));
+        assertEquals(50L * 1024 * 1024, json.getLong("bytesPerMinute"));
+    }
+
+    @Test
+    public void unmeasuredTimingsAreSentAsNull() throws Exception {
+        // No frame splitter and no pipe: neither hand-offs nor sink writes were timed
+        SessionTelemetry telemetry = new SessionTelemetry(0, 30);
+        telemetry.finish(60_000, 10L * 1024 * 1024);
+
+        JSONObject json = telemetry.toJson();
+        assertEquals(0, json.getLong("frames"));
+        assertTrue(json.isNull("frameHandoffAvgMs"));
+        assertTrue(json.isNull("frameHandoffP95Ms"));
+        assertTrue(json.isNull("sinkWriteAvgMs"));
+        assertTrue(json.isNull("sinkWriteP95Ms"));
+
+        telemetry.onSinkWrite(2_000_000);
+        json = telemetry.toJson();
+        assertFalse(json.isNull("sinkWriteAvgMs"));
+        assertTrue(json.isNull("frameHandoffAvgMs"));
+    }
+}
@@ -1,6 +1,17 @@
 /**
  * @typedef {Object} StartOptions
  * @property {string} fileName - Name of the video file
+ * @property {number} [sampleFps] - Frames per second (max 2) sampled for score-screen detection
+ * @property {string[]} [scoreScreenTemplates] - Hex difference hashes of reference score screens
+ * @property {boolean} [encrypt] - Encrypt the recording as it is written (AES-GCM, stored as .ts.enc)
+ * @property {boolean} [prewarm] - Prepare the recorder while the permission dialog is showing (default true)
+ * @property {LiveStreamTarget} [liveStream] - Upload the recording as it is made (stored as .ts)
+ */
+
+/**
+ * @typedef {Object} LiveStreamTarget
+ * @property {string} url - Ingest base, e.g. https://host/api/matches/42/live
+ * @property {Object<string, string>} [headers] - Sent with every segment (auth, currency)
  */
 
 /**
@@ -9,8 +20,42 @@
  * @property {string} filePath
  */
 
+/**
+ * @typedef {Object} RecordingMarker
+ * @property {string} label
+ * @property {number} offsetMs - Monotonic offset from the start of the recording
+ * @property {number} created - Wall clock time the marker was added
+ * @property {number} [keyframeUs] - Nearest preceding keyframe, set once the recording is finalized
+ */
+
+/**
+ * Payload of the `recordingStartTimings` event. Phase durations are in milliseconds.
+ * @typedef {Object} RecordingStartTimings
+ * @property {Object<string, number>} phases - e.g. permissionDialog, serviceLaunch, recorderPrepare, createVirtualDisplay
+ * @property {boolean} prewarmed - Whether a recorder prepared during the permission dialog was used
+ * @property {number} prewarmMs
+ * @property {number} bitRate - Bitrate chosen to fit the free storage
+ * @property {number} maxDurationMs - Estimated recording time before the storage budget is used up
+ * @property {boolean} firstFrameObserved - False when no frame sampler is running; recorder start is used instead
+ * @property {number} grantToFirstFrameMs
+ * @property {number} targetMs
+ * @property {boolean} withinTarget
+ */
+
+/**
+ * @typedef {Object} RecordingChunk
+ * @property {string} data - Base64 plaintext; encrypted recordings are decrypted on the device
+ * @property {number} bytesRead - 0 at the end of the recording
+ * @property {number} totalLength - Plaintext length of the whole recording
+ */
+
 /**
  * @typedef {Object} ScreenRecorderPlugin
  * @property {(options: StartOptions) => Promise<{ success: boolean }>} startRecording
  * @property {() => Promise<StopResult>} stopRecording
+ * @property {(options: { label: string }) => Promise<{ label: string }>} addMarker
+ * @property {(options: { headers: Object<string, string> }) => Promise<void>} updateRequestHeaders - New headers for the running recording's uploads
+ * @property {(options: { path: string }) => Promise<{ sha256: string }>} hashRecording - SHA-256 of the plaintext, hex
+ * @property {(options: { path: string, offset?: number, length?: number }) => Promise<RecordingChunk>} readRecordingChunk - At most 4 MB per call
+ * @property {(event: 'recordingStartTimings' | 'recordingStopped' | 'recordingLowStorage' | 'liveStreamFinished', callback: (data: Object) => void) => Promise<{ remove: () => void }>} addListener
  */
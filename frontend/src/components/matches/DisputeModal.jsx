@@ -8,7 +8,10 @@ export const DisputeModal = ({
   disputeReason, 
   onDisputeReasonChange, 
   isDisputing, 
-  error 
+  error,
+  matchRecording,
+  attachRecording,
+  onAttachRecordingChange
 }) => (
   <ModalWrapper 
     show={show} 
@@ -31,6 +34,23 @@ export const DisputeModal = ({
         <p className="text-xs text-gray-500 mt-1">Provide as much detail as possible for admin review</p>
       </div>
 
+      {matchRecording && (
+        <label className="flex items-start gap-2 text-sm text-gray-400">
+          <input
+            type="checkbox"
+            checked={attachRecording}
+            onChange={(e) => onAttachRecordingChange(e.target.checked)}
+            className="mt-0.5 rounded border-neutral-600 text-primary-500 focus:ring-primary-500"
+          />
+          <span>
+            Attach the screen recording of this match
+            <span className="block text-xs opacity-75">
+              {matchRecording.name} ({(matchRecording.size / 1024 / 1024).toFixed(1)} MB)
+            </span>
+          </span>
+        </label>
+      )}
+
       {error && (
         <div className="rounded-lg bg-red-800/50 border border-red-600/50 py-2 px-3 text-sm text-red-200 flex items-center gap-2">
           <XCircleIcon className="h-4 w-4" />
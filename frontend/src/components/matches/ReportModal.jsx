@@ -11,7 +11,8 @@ export const ReportModal = ({
   onScoreChange,
   isReporting,
   error,
-  isPlayer1
+  isPlayer1,
+  matchRecording
 }) => {
   const handleSubmit = useCallback(() => {
     if (score.player1_score === score.player2_score) {
@@ -73,13 +74,38 @@ export const ReportModal = ({
           </div>
         </div>
 
+        {/* Screen recording of this match, uploaded from the device (skipped if already stored) */}
+        {matchRecording && (
+          <label className="flex items-start gap-2 text-sm text-gray-600 dark:text-gray-400">
+            <input
+              type="checkbox"
+              checked={score.evidence_recording === matchRecording.path}
+              onChange={(e) =>
+                onScoreChange({
+                  ...score,
+                  evidence_recording: e.target.checked ? matchRecording.path : null,
+                  evidence_file: null,
+                  evidence_url: '',
+                })
+              }
+              className="mt-0.5 rounded border-gray-300 dark:border-gray-600 text-primary-500 focus:ring-primary-500"
+            />
+            <span>
+              Attach the screen recording of this match
+              <span className="block text-xs opacity-75">
+                {matchRecording.name} ({(matchRecording.size / 1024 / 1024).toFixed(1)} MB)
+              </span>
+            </span>
+          </label>
+        )}
+
         {/* File / URL Upload */}
         <FileUploadSection
           onFileSelect={(file) =>
-            onScoreChange({ ...score, evidence_file: file, evidence_url: '' })
+            onScoreChange({ ...score, evidence_file: file, evidence_url: '', evidence_recording: null })
           }
           onUrlChange={(url) =>
-            onScoreChange({ ...score, evidence_url: url, evidence_file: null })
+            onScoreChange({ ...score, evidence_url: url, evidence_file: null, evidence_recording: null })
           }
           currentFile={score.evidence_file}
           currentUrl={score.evidence_url}
@@ -17,7 +17,7 @@ import { DisputeModal } from "../../components/matches/DisputeModal";
 import Banner from "../../components/common/Banner";
 import LoadingSpinner from "../../components/common/LoadingSpinner";
 import ActionButtons from "../../components/matches/ActionButtons";
-import { matchService } from "../../services/matchService";
+import { matchService, MAX_EVIDENCE_BYTES } from "../../services/matchService";
 import { Capacitor } from "@capacitor/core";
 import MobileActionBar from "../../components/matches/MobileActionBar";
 import ParticipantsSection from "../../components/matches/ParticipantSection";
@@ -26,6 +26,10 @@ import { screenRecorderUtil } from "../../utils/ScreenRecorder";
 
 // Debug flag for screen recording (set to true to enable logging)
 const DEBUG_RECORDING = false;
+// Stream evidence to the backend while recording (opt-in: VITE_LIVE_EVIDENCE_STREAMING=true)
+const LIVE_EVIDENCE_STREAMING = import.meta.env.VITE_LIVE_EVIDENCE_STREAMING === "true";
+// Auth tokens last an hour; the recorder's uploads get a fresh one well before that
+const RECORDING_HEADERS_REFRESH_MS = 10 * 60 * 1000;
 
 // Memoized status configuration with theme support
 export const STATUS_CONFIG = {
@@ -98,6 +102,7 @@ export default function MatchPage() {
     player2_score: 0,
     evidence_file: null,
     evidence_url: "",
+    evidence_recording: null,
   });
   const [disputeReason, setDisputeReason] = useState("");
   const [showReportModal, setShowReportModal] = useState(false);
@@ -116,6 +121,8 @@ export default function MatchPage() {
   const [isEnteringGame, setIsEnteringGame] = useState(false);
   const [recordingActive, setRecordingActive] = useState(false);
   const [recordingError, setRecordingError] = useState(null);
+  const [matchRecording, setMatchRecording] = useState(null);
+  const [attachDisputeRecording, setAttachDisputeRecording] = useState(false);
 
   // Track if we've already redirected to game (prevent duplicate redirects on polling)
   const hasRedirectedToGameRef = useRef(false);
@@ -149,6 +156,7 @@ export default function MatchPage() {
         player2_score: matchData.participant2_score || 0,
         evidence_file: null,
         evidence_url: "",
+        evidence_recording: null,
       });
 
       // Set initial ready status based on match status
@@ -171,6 +179,73 @@ export default function MatchPage() {
     fetchMatchData();
   }, [fetchMatchData]);
 
+  // The recording service can finalize on its own (storage budget used up, recorder error)
+  useEffect(() => {
+    if (Capacitor.getPlatform() !== "android") return;
+
+    const listeners = [
+      screenRecorderUtil.onRecordingStopped((event) => {
+        if (event.reason === "user") return;
+        setRecordingActive(false);
+        setRecordingError(
+          event.reason === "lowStorage"
+            ? "Recording stopped: the device is out of storage. The footage so far was saved."
+            : "Recording stopped unexpectedly. The footage so far was saved."
+        );
+      }),
+      screenRecorderUtil.onLowStorage(() => {
+        setRecordingError("Storage is almost full. Recording will stop soon.");
+      }),
+    ];
+    return () => {
+      listeners.forEach((listener) =>
+        listener.then((handle) => handle.remove()).catch(() => {})
+      );
+    };
+  }, []);
+
+  // The live stream and telemetry upload outlast the token they were started with
+  useEffect(() => {
+    if (!recordingActive) return;
+
+    const interval = setInterval(async () => {
+      try {
+        await screenRecorderUtil.updateRequestHeaders(
+          await matchService.getRecordingRequestHeaders()
+        );
+      } catch (err) {
+        console.warn("[ScreenRecord] Failed to refresh recording headers:", err);
+      }
+    }, RECORDING_HEADERS_REFRESH_MS);
+    return () => clearInterval(interval);
+  }, [recordingActive]);
+
+  // Offer this match's finished screen recording as evidence when reporting or disputing
+  useEffect(() => {
+    if (!(showReportModal || showDisputeModal) || !match?.id || Capacitor.getPlatform() !== "android") return;
+
+    let cancelled = false;
+    const findRecording = async () => {
+      try {
+        const prefix = `match_${match.id}_`;
+        const recordings = await screenRecorderUtil.listRecordings();
+        const [latest] = recordings
+          .filter((recording) => recording.name?.startsWith(prefix) && recording.size <= MAX_EVIDENCE_BYTES)
+          .sort((a, b) => b.created - a.created);
+        // A recording that is still being written can't be attached yet
+        const active = screenRecorderUtil.getCurrentSession().fileName;
+        const isActive = active && latest?.name.startsWith(active.replace(/\.[^.]+$/, ""));
+        if (!cancelled) setMatchRecording(latest && !isActive ? latest : null);
+      } catch (err) {
+        console.warn("[ScreenRecord] Could not list recordings for evidence:", err);
+      }
+    };
+    findRecording();
+    return () => {
+      cancelled = true;
+    };
+  }, [showReportModal, showDisputeModal, match?.id]);
+
   // Countdown Timer for Auto-confirm
   useEffect(() => {
     if (match?.status === "awaiting_confirmation" && match.auto_confirm_at) {
@@ -377,8 +452,10 @@ export default function MatchPage() {
       player2_score: match?.participant2_score || 0,
       evidence_file: null,
       evidence_url: "",
+      evidence_recording: null,
     });
     setDisputeReason("");
+    setAttachDisputeRecording(false);
     setError("");
     setSuccess("");
   }, [match?.participant1_score, match?.participant2_score]);
@@ -436,9 +513,11 @@ export default function MatchPage() {
     setSuccess("");
 
     try {
+      // Sent by hash when the same recording was already attached to the report
       await matchService.dispute(match.id, {
         reason: disputeReason,
         evidence_url: "",
+        evidence_recording: attachDisputeRecording && matchRecording ? matchRecording.path : null,
       });
       setSuccess("Dispute raised successfully. Admins will review it.");
       setShowDisputeModal(false);
@@ -449,7 +528,7 @@ export default function MatchPage() {
     } finally {
       setIsDisputing(false);
     }
-  }, [match, disputeReason, fetchMatchData, resetForms]);
+  }, [match, disputeReason, attachDisputeRecording, matchRecording, fetchMatchData, resetForms]);
 
   // Handlers for ready status - FIXED
   const handleMarkReady = useCallback(async () => {
@@ -664,6 +743,11 @@ export default function MatchPage() {
         const recordResult = await screenRecorderUtil.start({
           fileName: `match_${match.id}_${Date.now()}.mp4`,
           autoCleanupDays: 7,
+          // Lets admins watch the match while it is played; uploads the full bitrate on mobile data
+          liveStream: LIVE_EVIDENCE_STREAMING
+            ? await matchService.getLiveStreamTarget(match.id)
+            : undefined,
+          telemetry: await matchService.getRecordingTelemetryTarget(),
         });
 
         if (!recordResult.success) {
@@ -936,6 +1020,7 @@ export default function MatchPage() {
         isReporting={isReporting}
         error={error}
         isPlayer1={isPlayer1}
+        matchRecording={matchRecording}
       />
 
       <DisputeModal
@@ -946,6 +1031,9 @@ export default function MatchPage() {
         onDisputeReasonChange={setDisputeReason}
         isDisputing={isDisputing}
         error={error}
+        matchRecording={matchRecording}
+        attachRecording={attachDisputeRecording}
+        onAttachRecordingChange={setAttachDisputeRecording}
       />
 
       {/* Match Card */}
@@ -124,5 +124,15 @@ export const adminService = {
     }
   },
 
+  // Recording performance per device model and codec, from the recorder's session telemetry
+  getRecordingStatsByModel: async (params = {}) => {
+    try {
+      const response = await api.get('/admin/telemetry/recording-sessions/by-model', { params });
+      return response.data;
+    } catch (error) {
+      throwNormalizedError(error);
+    }
+  },
+
   // Add other admin methods as needed
 };
@@ -40,30 +40,35 @@ const getCurrentCurrencyHeader = () => {
   }
 };
 
+// --- Helper function to get the current auth token ---
+const getAuthToken = async () => {
+  const authType = localStorage.getItem('authType');
+
+  if (authType === 'firebase') {
+    // For Firebase auth, get fresh token
+    try {
+      const { auth } = await import('../../firebase');
+      const user = auth.currentUser;
+      if (user) {
+        return await user.getIdToken();
+      }
+    } catch (tokenError) {
+      console.warn('Failed to get Firebase token:', tokenError);
+    }
+    return null;
+  }
+
+  // Legacy JWT auth
+  return localStorage.getItem('authToken');
+};
+
 // --- Request Interceptor: attach token AND currency ---
 api.interceptors.request.use(
   async (config) => {
     // Add authentication token
-    const authType = localStorage.getItem('authType');
-    
-    if (authType === 'firebase') {
-      // For Firebase auth, get fresh token
-      try {
-        const { auth } = await import('../../firebase');
-        const user = auth.currentUser;
-        if (user) {
-          const token = await user.getIdToken();
-          config.headers.Authorization = `Bearer ${token}`;
-        }
-      } catch (tokenError) {
-        console.warn('Failed to get Firebase token:', tokenError);
-      }
-    } else {
-      // Legacy JWT auth
-      const token = localStorage.getItem('authToken');
-      if (token) {
-        config.headers.Authorization = `Bearer ${token}`;
-      }
+    const token = await getAuthToken();
+    if (token) {
+      config.headers.Authorization = `Bearer ${token}`;
     }
 
     // Add currency header to ALL requests
@@ -156,6 +161,16 @@ api.interceptors.response.use(
 // --- Export additional helper methods ---
 api.getCurrentCurrency = getCurrentCurrencyHeader;
 
+// Headers for requests made outside axios (e.g. by native plugins)
+api.getRequestHeaders = async () => {
+  const headers = { 'X-Currency': getCurrentCurrencyHeader() };
+  const token = await getAuthToken();
+  if (token) {
+    headers.Authorization = `Bearer ${token}`;
+  }
+  return headers;
+};
+
 // Helper method to update currency dynamically
 api.updateCurrency = (currencyCode) => {
   if (typeof window !== 'undefined') {
@@ -1,4 +1,78 @@
 import api from './api';
+import { screenRecorderUtil } from '../utils/ScreenRecorder';
+import { Sha256 } from '../utils/sha256';
+
+// The server's evidence upload limit. Nothing larger can have been stored, so nothing larger
+// is hashed or offered as evidence.
+export const MAX_EVIDENCE_BYTES = 50 * 1024 * 1024;
+
+const HASH_SLICE_BYTES = 4 * 1024 * 1024;
+
+// Hex SHA-256 of the evidence, or null to skip the dedup check. Native recordings are
+// hashed on the device; files are hashed a slice at a time so they are never held whole.
+const hashEvidence = async (data) => {
+  if (data.evidence_recording) {
+    return screenRecorderUtil.hashRecording(data.evidence_recording);
+  }
+  const file = data.evidence_file;
+  if (file.size > MAX_EVIDENCE_BYTES) {
+    return null;
+  }
+  const hash = new Sha256();
+  for (let offset = 0; offset < file.size; offset += HASH_SLICE_BYTES) {
+    const slice = await file.slice(offset, offset + HASH_SLICE_BYTES).arrayBuffer();
+    hash.update(new Uint8Array(slice));
+  }
+  return hash.hex();
+};
+
+const isEvidenceStored = async (sha256) => {
+  try {
+    await api.head(`/evidence/${sha256}`);
+    return true;
+  } catch {
+    return false;
+  }
+};
+
+// Posts fields with the evidence attached. Evidence the server already has is sent as a
+// hash reference; anything else (or any failure to hash) falls back to a full upload.
+const postWithEvidence = async (url, fields, data) => {
+  if (!data.evidence_file && !data.evidence_recording) {
+    const response = await api.post(url, { ...fields, evidence_url: data.evidence_url });
+    return response.data;
+  }
+
+  const sha256 = await hashEvidence(data).catch(() => null);
+  if (sha256 && (await isEvidenceStored(sha256))) {
+    try {
+      const response = await api.post(url, { ...fields, evidence_sha256: sha256 });
+      return response.data;
+    } catch (error) {
+      // Cleaned up between the check and the post: upload it after all
+      if (error.response?.data?.code !== 'EVIDENCE_NOT_FOUND') throw error;
+    }
+  }
+
+  const formData = new FormData();
+  Object.entries(fields).forEach(([key, value]) => formData.append(key, value));
+  if (data.evidence_file) {
+    formData.append('evidence', data.evidence_file);
+  } else {
+    // Recordings are uploaded decrypted; encrypted ones are stored as MPEG-TS
+    const path = data.evidence_recording;
+    const name = (path.split('/').pop() || 'recording.mp4').replace(/\.enc$/, '');
+    const type = name.endsWith('.ts') ? 'video/mp2t' : 'video/mp4';
+    formData.append('evidence', await screenRecorderUtil.readRecordingAsBlob(path, type), name);
+  }
+
+  const response = await api.post(url, formData, {
+    headers: {
+      'Content-Type': 'multipart/form-data',
+    },
+  });
+  return response.data;
+};
 
 export const matchService = {
   getById: async (id) => {
@@ -23,57 +97,44 @@ export const matchService = {
   },
   confirmActive: (matchId) => api.post(`/matches/${matchId}/confirm-active`),
 
+  // Ingest target for live evidence streaming; the native recorder uploads to it directly
+  getLiveStreamTarget: async (matchId) => {
+    const base = new URL(api.defaults.baseURL, window.location.origin).href.replace(/\/$/, '');
+    return {
+      url: `${base}/matches/${matchId}/live`,
+      headers: await api.getRequestHeaders(),
+    };
+  },
+
+  // Metrics endpoint for recording session summaries, also uploaded by the native recorder
+  getRecordingTelemetryTarget: async () => {
+    const base = new URL(api.defaults.baseURL, window.location.origin).href.replace(/\/$/, '');
+    return {
+      url: `${base}/telemetry/recording-sessions`,
+      headers: await api.getRequestHeaders(),
+    };
+  },
+
+  // Current auth headers, handed to a running recording before its token expires
+  getRecordingRequestHeaders: () => api.getRequestHeaders(),
+
   confirmScore: async (matchId) => {
     const response = await api.post(`/matches/${matchId}/confirm-score`);
     return response.data;
   },
 
+  // data.evidence_file is a File, data.evidence_recording a native recording path
   reportScore: async (matchId, data) => {
-    // Check if we have a file to upload
-    if (data.evidence_file) {
-      const formData = new FormData();
-      formData.append('player1_score', data.player1_score);
-      formData.append('player2_score', data.player2_score);
-      formData.append('evidence', data.evidence_file);
-
-      const response = await api.post(`/matches/${matchId}/report-score`, formData, {
-        headers: {
-          'Content-Type': 'multipart/form-data',
-        },
-      });
-      return response.data;
-    } else {
-      // Fallback to JSON if no file
-      const response = await api.post(`/matches/${matchId}/report-score`, {
-        player1_score: data.player1_score,
-        player2_score: data.player2_score,
-        evidence_url: data.evidence_url,
-      });
-      return response.data;
-    }
+    return postWithEvidence(`/matches/${matchId}/report-score`, {
+      player1_score: data.player1_score,
+      player2_score: data.player2_score,
+    }, data);
   },
 
   dispute: async (matchId, data) => {
-    // Check if we have a file to upload
-    if (data.evidence_file) {
-      const formData = new FormData();
-      formData.append('reason', data.reason);
-      formData.append('evidence', data.evidence_file);
-
-      const response = await api.post(`/matches/${matchId}/dispute`, formData, {
-        headers: {
-          'Content-Type': 'multipart/form-data',
-        },
-      });
-      return response.data;
-    } else {
-      // Fallback to JSON if no file
-      const response = await api.post(`/matches/${matchId}/dispute`, {
-        reason: data.reason,
-        evidence_url: data.evidence_url,
-      });
-      return response.data;
-    }
+    return postWithEvidence(`/matches/${matchId}/dispute`, {
+      reason: data.reason,
+    }, data);
   },
 
   getTournamentMatches: async (id) => {
@@ -14,6 +14,34 @@ let currentRecordingSession = {
   shouldPersist: false, // Only true if match becomes live
 };
 
+// Native listener that ends the session when the service stops by itself
+let sessionStopListener = null;
+
+const watchForNativeStop = () => {
+  if (sessionStopListener) return;
+  sessionStopListener = NativeRecorder.addListener('recordingStopped', (event) => {
+    const { fileName } = currentRecordingSession;
+    // The stored file may have a different extension (.ts, .ts.enc) than the requested name
+    const stem = fileName ? fileName.replace(/\.[^.]+$/, '') : null;
+    const storedName = (event.filePath || '').split('/').pop();
+    if (stem && !storedName.startsWith(stem)) return;
+
+    if (event.reason !== 'user') {
+      console.warn('[ScreenRecorder] Recording stopped:', event.reason);
+    }
+    currentRecordingSession = {
+      active: false,
+      fileName: null,
+      startTime: null,
+      shouldPersist: false,
+    };
+  });
+  sessionStopListener.catch((error) => {
+    console.warn('[ScreenRecorder] Could not watch for recording stops:', error);
+    sessionStopListener = null;
+  });
+};
+
 export const screenRecorderUtil = {
   /**
    * Get the current recording session state
@@ -105,7 +133,19 @@ export const screenRecorderUtil = {
       const fileName = (options && options.fileName) || `recording_${Date.now()}.mp4`;
       params.fileName = fileName;
       if (options && options.autoCleanupDays) params.autoCleanupDays = options.autoCleanupDays;
+      // Optional on-device score-screen detection (hex template hashes, sampled at 1-2 fps)
+      if (options && options.sampleFps) params.sampleFps = options.sampleFps;
+      if (options && options.scoreScreenTemplates) params.scoreScreenTemplates = options.scoreScreenTemplates;
+      // Encrypt the recording at rest as it is written (stored as .ts.enc)
+      if (options && options.encrypt) params.encrypt = true;
+      // Recorder setup runs while the capture dialog is up unless explicitly disabled
+      if (options && options.prewarm === false) params.prewarm = false;
+      // Stream TS segments to the match's live evidence endpoint while recording
+      if (options && options.liveStream) params.liveStream = options.liveStream;
+      // Per-session performance summary, queued on the device and uploaded in batches
+      if (options && options.telemetry) params.telemetry = options.telemetry;
       
+      watchForNativeStop();
       await NativeRecorder.startRecording(params);
       
       // 4. Track the session
@@ -182,6 +222,59 @@ export const screenRecorderUtil = {
     return this.stop(true);
   },
 
+  /**
+   * Flag a moment in the active recording (e.g. "score screen", "disconnect")
+   */
+  async addMarker(label) {
+    try {
+      return await NativeRecorder.addMarker({ label });
+    } catch (error) {
+      console.error('Failed to add marker:', error);
+      throw error;
+    }
+  },
+
+  /**
+   * Give the running recording fresh request headers (renewed auth token) for its live
+   * stream and telemetry upload. A no-op when nothing is recording.
+   */
+  async updateRequestHeaders(headers) {
+    return NativeRecorder.updateRequestHeaders({ headers });
+  },
+
+  /**
+   * Listen for startup phase timings, reported once the first frame reaches the encoder
+   * @param {(timings: object) => void} callback
+   */
+  async onStartTimings(callback) {
+    return NativeRecorder.addListener('recordingStartTimings', callback);
+  },
+
+  /**
+   * Listen for the recording ending on its own (storage budget used up, recorder error)
+   * as well as on request. The session itself is cleared whether or not anyone listens.
+   * @param {(event: { filePath: string, reason: string }) => void} callback
+   */
+  async onRecordingStopped(callback) {
+    return NativeRecorder.addListener('recordingStopped', callback);
+  },
+
+  /**
+   * Listen for the end of a live stream, once the remaining segments are uploaded or given up on
+   * @param {(event: { filePath: string, completed: boolean, segmentsSent: number, droppedSegments: number, failure?: string }) => void} callback
+   */
+  async onLiveStreamFinished(callback) {
+    return NativeRecorder.addListener('liveStreamFinished', callback);
+  },
+
+  /**
+   * Listen for the recording approaching the free-space budget it was started with
+   * @param {(event: { filePath: string, availableBytes: number, maxFileBytes: number }) => void} callback
+   */
+  async onLowStorage(callback) {
+    return NativeRecorder.addListener('recordingLowStorage', callback);
+  },
+
   /**
    * List all recordings
    */
@@ -219,6 +312,14 @@ export const screenRecorderUtil = {
     }
   },
 
+  /**
+   * SHA-256 of a recording's plaintext as lowercase hex, computed on the device
+   */
+  async hashRecording(path) {
+    const { sha256 } = await NativeRecorder.hashRecording({ path });
+    return sha256;
+  },
+
   /**
    * Cleanup old recordings
    */
@@ -270,26 +371,62 @@ export const screenRecorderUtil = {
     }
   },
 
+  /**
+   * Read a recording through the native plugin in chunks, decrypting encrypted
+   * recordings on the device. Returns a Blob of the plaintext.
+   */
+  async readRecordingAsBlob(path, type) {
+    const parts = [];
+    let offset = 0;
+    let totalLength = Infinity;
+
+    while (offset < totalLength) {
+      const chunk = await NativeRecorder.readRecordingChunk({ path, offset });
+      totalLength = chunk.totalLength;
+      if (!chunk.bytesRead) break;
+
+      const bytes = atob(chunk.data);
+      const array = new Uint8Array(bytes.length);
+      for (let i = 0; i < bytes.length; i++) {
+        array[i] = bytes.charCodeAt(i);
+      }
+      parts.push(array);
+      offset += chunk.bytesRead;
+    }
+
+    return new Blob(parts, { type });
+  },
+
   /**
    * Upload recording to server
    */
   async uploadRecording(path, uploadUrl) {
     try {
-      // First, get the file as base64 or blob
-      const base64Data = await this.readRecordingAsBase64(path);
-      
-      // Convert base64 to blob
-      const byteCharacters = atob(base64Data);
-      const byteNumbers = new Array(byteCharacters.length);
-      for (let i = 0; i < byteCharacters.length; i++) {
-        byteNumbers[i] = byteCharacters.charCodeAt(i);
+      const isEncrypted = path.endsWith('.ts.enc');
+      let blob;
+
+      if (isEncrypted) {
+        // Encrypted recordings can only be read through the native decrypting reader
+        blob = await this.readRecordingAsBlob(path, 'video/mp2t');
+      } else {
+        // First, get the file as base64 or blob
+        const base64Data = await this.readRecordingAsBase64(path);
+        
+        // Convert base64 to blob
+        const byteCharacters = atob(base64Data);
+        const byteNumbers = new Array(byteCharacters.length);
+        for (let i = 0; i < byteCharacters.length; i++) {
+          byteNumbers[i] = byteCharacters.charCodeAt(i);
+        }
+        const byteArray = new Uint8Array(byteNumbers);
+        // Streamed recordings are kept as MPEG-TS
+        blob = new Blob([byteArray], { type: path.endsWith('.ts') ? 'video/mp2t' : 'video/mp4' });
       }
-      const byteArray = new Uint8Array(byteNumbers);
-      const blob = new Blob([byteArray], { type: 'video/mp4' });
       
       // Create form data
       const formData = new FormData();
-      const fileName = path.split('/').pop() || 'recording.mp4';
+      const storedName = path.split('/').pop() || 'recording.mp4';
+      const fileName = isEncrypted ? storedName.replace(/\.enc$/, '') : storedName;
       formData.append('video', blob, fileName);
       
       // Upload